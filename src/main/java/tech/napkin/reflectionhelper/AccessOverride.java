@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Sets the override flag of an {@link AccessibleObject} without the checks of
+ * {@link AccessibleObject#setAccessible(boolean)}, for {@link _Permission}. Up to
+ * Java 15 this is done by calling {@code AccessibleObject#setAccessible0(boolean)}
+ * reflectively, which prints an illegal reflective access warning.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class AccessOverride {
+
+	/** {@code AccessibleObject#setAccessible0(boolean)}, or {@code null} if it can't be made accessible. */
+	@Nullable private static final Method setAccessible0 = setAccessible0();
+
+	/** Whether {@link #override(AccessibleObject)} works. */
+	static final boolean available = setAccessible0 != null;
+
+	@Nullable
+	private static Method setAccessible0() {
+		try {
+			final Method method = AccessibleObject.class.getDeclaredMethod("setAccessible0", boolean.class);
+			method.setAccessible(true);
+			return method;
+		} catch (final NoSuchMethodException | SecurityException | InaccessibleObjectException e) {
+			return null;
+		}
+	}
+
+	/** @return whether the object was made accessible, which it is unless overriding isn't {@link #available} */
+	@SneakyThrows({IllegalAccessException.class, InvocationTargetException.class})
+	static boolean override(@NotNull final AccessibleObject object) {
+		if (setAccessible0 == null) return false;
+		setAccessible0.invoke(object, true);
+		return true;
+	}
+
+}
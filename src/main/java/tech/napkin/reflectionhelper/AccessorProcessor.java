@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the {@link Accessors.Accessor} of every class annotated with
+ * {@link GenerateAccessor}: a class in the same package that reads and writes
+ * the class's non-private fields and calls its non-private constructors with
+ * plain Java code, dispatching on the field name or the parameter types.
+ * <p>
+ * Registered as a service, so it runs whenever this library is on the annotation
+ * processor path.
+ */
+@SupportedAnnotationTypes("tech.napkin.reflectionhelper.GenerateAccessor")
+public final class AccessorProcessor extends AbstractProcessor {
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment round) {
+		for (final Element element : round.getElementsAnnotatedWith(GenerateAccessor.class)) {
+			if (!element.getKind().isClass()) {
+				error(element, "@GenerateAccessor can only be applied to classes");
+			} else if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				error(element, "@GenerateAccessor cannot be applied to private classes");
+			} else if (((TypeElement) element).getQualifiedName().length() == 0) {
+				// local and anonymous classes, or classes nested in them, can't be named from outside
+				error(element, "@GenerateAccessor cannot be applied to local or anonymous classes");
+			} else {
+				try {
+					write((TypeElement) element);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+		return true;
+	}
+
+	private void error(@NotNull final Element element, @NotNull final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private void write(@NotNull final TypeElement type) throws IOException {
+		final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + Accessors.SUFFIX;
+		final String typeName = type.getQualifiedName().toString();
+
+		final List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements()).stream()
+			.filter(field -> !field.getModifiers().contains(Modifier.PRIVATE))
+			.collect(Collectors.toList());
+		final boolean constructible = !type.getModifiers().contains(Modifier.ABSTRACT) && type.getKind() == ElementKind.CLASS
+			&& (type.getNestingKind() == NestingKind.TOP_LEVEL || type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC));
+		final List<ExecutableElement> constructors = !constructible ? Collections.emptyList() : ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+			.filter(constructor -> !constructor.getModifiers().contains(Modifier.PRIVATE))
+			.collect(Collectors.toList());
+
+		final StringBuilder out = new StringBuilder();
+		if (!packageName.isEmpty()) out.append("package ").append(packageName).append(";\n\n");
+		// no @Generated: it is in java.compiler, which modular and Java 8 consumers may not see
+		out.append("/** Generated by {@link ").append(AccessorProcessor.class.getName()).append("}. */\n")
+			.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+			.append("public final class ").append(simpleName).append(" implements ").append(Accessors.Accessor.class.getCanonicalName()).append(" {\n\n");
+
+		for (int i = 0; i < constructors.size(); i++) {
+			out.append("\tprivate static final Class<?>[] parameters").append(i).append(" = {")
+				.append(constructors.get(i).getParameters().stream().map(p -> erasure(p.asType()) + ".class").collect(Collectors.joining(", ")))
+				.append("};\n");
+		}
+		if (!constructors.isEmpty()) out.append('\n');
+
+		out.append("\t@Override\n\tpublic Object get(final Object instance, final String field) {\n\t\tswitch (field) {\n");
+		for (final VariableElement field : fields) {
+			out.append("\t\t\tcase \"").append(field.getSimpleName()).append("\": return ").append(access(typeName, field)).append(";\n");
+		}
+		out.append("\t\t\tdefault: return NOT_HANDLED;\n\t\t}\n\t}\n\n");
+
+		out.append("\t@Override\n\tpublic boolean set(final Object instance, final String field, final Object value) {\n\t\tswitch (field) {\n");
+		for (final VariableElement field : fields) {
+			if (field.getModifiers().contains(Modifier.FINAL)) continue;
+			out.append("\t\t\tcase \"").append(field.getSimpleName()).append("\": ");
+			if (field.asType().getKind().isPrimitive()) { // unboxing null would throw NullPointerException, where Field.set throws this
+				out.append("if (value == null) throw new IllegalArgumentException(\"Cannot set ").append(field.asType()).append(" field ")
+					.append(typeName).append('.').append(field.getSimpleName()).append(" to null\"); ");
+			}
+			out.append(access(typeName, field)).append(" = (").append(boxed(field.asType())).append(") value; return true;\n");
+		}
+		out.append("\t\t\tdefault: return false;\n\t\t}\n\t}\n\n");
+
+		out.append("\t@Override\n\tpublic Object construct(final Class<?>[] parameterTypes, final Object[] args) throws Throwable {\n");
+		for (int i = 0; i < constructors.size(); i++) {
+			final List<? extends VariableElement> parameters = constructors.get(i).getParameters();
+			out.append("\t\tif (java.util.Arrays.equals(parameterTypes, parameters").append(i).append(")) return new ").append(typeName).append('(');
+			for (int j = 0; j < parameters.size(); j++) {
+				if (j > 0) out.append(", ");
+				out.append('(').append(boxed(parameters.get(j).asType())).append(") args[").append(j).append(']');
+			}
+			out.append(");\n");
+		}
+		out.append("\t\treturn NOT_HANDLED;\n\t}\n\n}\n");
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? simpleName : packageName + '.' + simpleName, type).openWriter()) {
+			writer.write(out.toString());
+		}
+	}
+
+	/** Instances are cast to the raw type, so fields of a type variable are seen as their erasure. */
+	@NotNull
+	private static String access(@NotNull final String typeName, @NotNull final VariableElement field) {
+		return field.getModifiers().contains(Modifier.STATIC)
+			? typeName + '.' + field.getSimpleName()
+			: "((" + typeName + ") instance)." + field.getSimpleName();
+	}
+
+	@NotNull
+	private String erasure(@NotNull final TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	/** The type to cast an {@code Object} to before assigning it, boxed for primitives so it unboxes. */
+	@NotNull
+	private String boxed(@NotNull final TypeMirror type) {
+		return type.getKind().isPrimitive()
+			? processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString()
+			: erasure(type);
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Lookup of the accessors generated by the {@link AccessorProcessor} for classes
+ * annotated with {@link GenerateAccessor}.
+ * <p>
+ * The generated accessor of a class is named after its binary name with
+ * {@code $$Accessor} appended, and lives in the same package. Whether a class has
+ * one is only checked once, after which looking it up is a {@link ClassValue} read.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Accessors {
+
+	/** The suffix appended to the binary name of a class to get the name of its accessor. */
+	public static final String SUFFIX = "$$Accessor";
+
+	@NotNull private static final Accessor NONE = new Accessor() {
+		@Override
+		public Object get(@Nullable final Object instance, @NotNull final String field) {
+			return NOT_HANDLED;
+		}
+
+		@Override
+		public boolean set(@Nullable final Object instance, @NotNull final String field, @Nullable final Object value) {
+			return false;
+		}
+
+		@Override
+		public Object construct(@NotNull final Class<?>[] parameterTypes, @NotNull final Object[] args) {
+			return NOT_HANDLED;
+		}
+	};
+
+	private static final ClassValue<Accessor> accessors = new ClassValue<Accessor>() {
+		@Override
+		protected Accessor computeValue(final Class<?> type) {
+			try {
+				final Class<?> generated = Class.forName(type.getName() + SUFFIX, true, type.getClassLoader());
+				return (Accessor) ReflectionConfig.recordMethod(ReflectionConfig.recordClass(generated).getDeclaredConstructor()).newInstance();
+			} catch (final ClassNotFoundException | NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+				return NONE;
+			}
+		}
+	};
+
+
+	/**
+	 * Implemented by the generated accessors. Every method signals that it does not
+	 * cover the requested member, so that the caller can fall back to reflection.
+	 */
+	public interface Accessor {
+
+		/** Returned by {@link #get} and {@link #construct} for members not covered by the accessor. */
+		Object NOT_HANDLED = new Object();
+
+		/**
+		 * @param instance the instance to read from, ignored for static fields
+		 * @param field the name of the field
+		 * @return the value of the field, or {@link #NOT_HANDLED}
+		 */
+		Object get(@Nullable Object instance, @NotNull String field);
+
+		/**
+		 * @param instance the instance to write to, ignored for static fields
+		 * @param field the name of the field
+		 * @param value the value to be written
+		 * @return whether the field was written
+		 * @throws ClassCastException if the value does not fit the field
+		 * @throws IllegalArgumentException if the value is {@code null} and the field is primitive
+		 */
+		boolean set(@Nullable Object instance, @NotNull String field, @Nullable Object value);
+
+		/**
+		 * @param parameterTypes the exact parameter types of the constructor
+		 * @param args the arguments to pass to the constructor
+		 * @return the new instance, or {@link #NOT_HANDLED}
+		 * @throws Throwable anything the constructor throws
+		 */
+		Object construct(@NotNull Class<?>[] parameterTypes, @NotNull Object[] args) throws Throwable;
+
+	}
+
+
+	/**
+	 * @param clazz any class
+	 * @return the generated accessor of the class, or {@code null} if it has none
+	 */
+	@Nullable
+	public static Accessor of(@NotNull final Class<?> clazz) {
+		final Accessor accessor = accessors.get(clazz);
+		return accessor == NONE ? null : accessor;
+	}
+
+}
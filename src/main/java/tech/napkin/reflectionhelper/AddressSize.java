@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * The size of a native address, which {@link Memory} bases its overheads on. Until
+ * Java 22 there is no API for it, so it is taken from the system properties; the
+ * multi-release JAR replaces this class on 22 and later with one that asks the
+ * foreign function and memory API.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class AddressSize {
+
+	/** The size of a native address, in bytes. */
+	static final int BYTES = bytes();
+
+	private static int bytes() {
+		final String model = System.getProperty("sun.arch.data.model");
+		if ("32".equals(model) || "64".equals(model)) return Integer.parseInt(model) / 8;
+		return System.getProperty("os.arch").contains("64") ? 8 : 4;
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * A minimal class file parser that only reads what {@link Classes} needs - the
+ * names of the class, its superclass, interfaces and class annotations, and for
+ * {@link MemberIndex} its fields and methods - straight out of the constant pool,
+ * without defining or loading anything.
+ * <p>
+ * Constant pool entries are only located on the first pass; their strings are
+ * decoded on demand, so a class file costs one scan of its bytes and a handful of
+ * small string allocations.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class ClassFileReader {
+
+	private static final int MAGIC = 0xCAFEBABE;
+
+	/* constant pool tags */
+	private static final int UTF8 = 1, INTEGER = 3, FLOAT = 4, LONG = 5, DOUBLE = 6, CLASS = 7, STRING = 8,
+		FIELD_REF = 9, METHOD_REF = 10, INTERFACE_METHOD_REF = 11, NAME_AND_TYPE = 12, METHOD_HANDLE = 15,
+		METHOD_TYPE = 16, DYNAMIC = 17, INVOKE_DYNAMIC = 18, MODULE = 19, PACKAGE = 20;
+
+	/**
+	 * Read the class file starting at the position of the buffer. The buffer's
+	 * position is not changed.
+	 *
+	 * @param buffer a buffer holding a class file
+	 * @param members whether to read the fields and methods of the class
+	 * @return the read class, or {@code null} if the buffer does not hold a class file
+	 * @throws IllegalArgumentException if the constant pool holds an unknown tag
+	 */
+	@Nullable
+	static Classes.Info read(@NotNull final ByteBuffer buffer, final boolean members) {
+		final ByteBuffer b = buffer.slice(); // big endian, indexed from 0
+		if (b.remaining() < 10 || b.getInt(0) != MAGIC) return null;
+
+		final int count = u2(b, 8);
+		final int[] offsets = new int[count];
+		int p = 10;
+		for (int i = 1; i < count; i++) {
+			offsets[i] = p;
+			final int tag = b.get(p) & 0xFF;
+			switch (tag) {
+				case UTF8:
+					p += 3 + u2(b, p + 1);
+					break;
+				case CLASS: case STRING: case METHOD_TYPE: case MODULE: case PACKAGE:
+					p += 3;
+					break;
+				case METHOD_HANDLE:
+					p += 4;
+					break;
+				case INTEGER: case FLOAT: case FIELD_REF: case METHOD_REF: case INTERFACE_METHOD_REF:
+				case NAME_AND_TYPE: case DYNAMIC: case INVOKE_DYNAMIC:
+					p += 5;
+					break;
+				case LONG: case DOUBLE:
+					p += 9;
+					i++; // takes two slots
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at " + p);
+			}
+		}
+
+		final int access = u2(b, p);
+		final String name = className(b, offsets, u2(b, p + 2));
+		final int superIndex = u2(b, p + 4);
+		final String superName = superIndex == 0 ? null : className(b, offsets, superIndex);
+
+		final int interfaceCount = u2(b, p + 6);
+		p += 8;
+		final List<String> interfaces = new ArrayList<>(interfaceCount);
+		for (int i = 0; i < interfaceCount; i++, p += 2) {
+			interfaces.add(className(b, offsets, u2(b, p)));
+		}
+
+		final List<MemberIndex.Member> memberList = members ? new ArrayList<>() : null;
+		p = readMembers(b, offsets, p, true, memberList);
+		p = readMembers(b, offsets, p, false, memberList);
+
+		List<String> annotations = Collections.emptyList();
+		final int attributeCount = u2(b, p);
+		p += 2;
+		for (int i = 0; i < attributeCount; i++) {
+			final String attribute = utf8(b, offsets, u2(b, p));
+			final int length = b.getInt(p + 2);
+			if ("RuntimeVisibleAnnotations".equals(attribute) || "RuntimeInvisibleAnnotations".equals(attribute)) {
+				if (annotations.isEmpty()) annotations = new ArrayList<>();
+				readAnnotations(b, offsets, p + 6, annotations);
+			}
+			p += 6 + length;
+		}
+
+		return new Classes.Info(name, superName, Collections.unmodifiableList(interfaces), Collections.unmodifiableList(annotations), access,
+			memberList == null ? null : Collections.unmodifiableList(memberList));
+	}
+
+	/**
+	 * Read a {@code fields} or {@code methods} table starting at {@code p} into a
+	 * list, or only skip it if the list is {@code null}.
+	 *
+	 * @return the offset after the table
+	 */
+	private static int readMembers(@NotNull final ByteBuffer b, @NotNull final int[] offsets, int p, final boolean fields, @Nullable final List<MemberIndex.Member> into) {
+		final int count = u2(b, p);
+		p += 2;
+		for (int i = 0; i < count; i++) {
+			if (into != null) {
+				into.add(new MemberIndex.Member(utf8(b, offsets, u2(b, p + 2)), utf8(b, offsets, u2(b, p + 4)), u2(b, p), fields));
+			}
+			p = skipAttributes(b, p + 6);
+		}
+		return p;
+	}
+
+	/** @return the offset after an {@code attributes} table starting at {@code p} */
+	private static int skipAttributes(@NotNull final ByteBuffer b, int p) {
+		final int count = u2(b, p);
+		p += 2;
+		for (int i = 0; i < count; i++) {
+			p += 6 + b.getInt(p + 2);
+		}
+		return p;
+	}
+
+	private static void readAnnotations(@NotNull final ByteBuffer b, @NotNull final int[] offsets, int p, @NotNull final List<String> into) {
+		final int count = u2(b, p);
+		p += 2;
+		for (int i = 0; i < count; i++) {
+			into.add(descriptorName(utf8(b, offsets, u2(b, p))));
+			p = skipAnnotation(b, p);
+		}
+	}
+
+	/** @return the offset after an {@code annotation} structure starting at {@code p} */
+	private static int skipAnnotation(@NotNull final ByteBuffer b, int p) {
+		final int pairs = u2(b, p + 2);
+		p += 4;
+		for (int i = 0; i < pairs; i++) {
+			p = skipElementValue(b, p + 2);
+		}
+		return p;
+	}
+
+	/** @return the offset after an {@code element_value} structure starting at {@code p} */
+	private static int skipElementValue(@NotNull final ByteBuffer b, int p) {
+		switch (b.get(p)) {
+			case 'e':
+				return p + 5;
+			case '@':
+				return skipAnnotation(b, p + 1);
+			case '[':
+				final int count = u2(b, p + 1);
+				p += 3;
+				for (int i = 0; i < count; i++) {
+					p = skipElementValue(b, p);
+				}
+				return p;
+			default: // primitives, strings and classes
+				return p + 3;
+		}
+	}
+
+
+	static int u2(@NotNull final ByteBuffer b, final int p) {
+		return b.getShort(p) & 0xFFFF;
+	}
+
+	/** @return the dotted name of the {@code CONSTANT_Class} at {@code index} */
+	@NotNull
+	static String className(@NotNull final ByteBuffer b, @NotNull final int[] offsets, final int index) {
+		return utf8(b, offsets, u2(b, offsets[index] + 1)).replace('/', '.');
+	}
+
+	/** @return the dotted class name of a field descriptor such as {@code Ljava/lang/Deprecated;} */
+	@NotNull
+	static String descriptorName(@NotNull final String descriptor) {
+		return descriptor.charAt(0) == 'L' ? descriptor.substring(1, descriptor.length() - 1).replace('/', '.') : descriptor;
+	}
+
+	/** Decode the modified UTF-8 {@code CONSTANT_Utf8} at {@code index}. */
+	@NotNull
+	static String utf8(@NotNull final ByteBuffer b, @NotNull final int[] offsets, final int index) {
+		final int start = offsets[index] + 3;
+		final int end = start + u2(b, offsets[index] + 1);
+		final char[] chars = new char[end - start];
+		int length = 0;
+		for (int p = start; p < end; ) {
+			final int c = b.get(p++) & 0xFF;
+			if (c < 0x80) {
+				chars[length++] = (char) c;
+			} else if (c < 0xE0) {
+				chars[length++] = (char) (((c & 0x1F) << 6) | (b.get(p++) & 0x3F));
+			} else {
+				chars[length++] = (char) (((c & 0x0F) << 12) | ((b.get(p++) & 0x3F) << 6) | (b.get(p++) & 0x3F));
+			}
+		}
+		return new String(chars, 0, length);
+	}
+
+}
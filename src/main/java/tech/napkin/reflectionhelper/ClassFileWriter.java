@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The writing counterpart of {@link ClassFileReader}: just enough of the class
+ * file format to emit the small classes the library generates, with no branches
+ * and so no stack map frames. Constant pool entries are shared, and code is
+ * passed in already assembled, see {@link Code}.
+ */
+final class ClassFileWriter {
+
+	private static final int MAGIC = 0xCAFEBABE;
+	/** Java 8, the last version without anything {@link Code} can't express. */
+	private static final int VERSION = 52;
+
+	/* constant pool tags */
+	private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, FIELD_REF = 9, METHOD_REF = 10, NAME_AND_TYPE = 12;
+
+	/* access flags */
+	static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> entries = new HashMap<>();
+	private int poolCount = 1;
+
+	private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+	private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+	private int fieldCount;
+
+	private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+	private final DataOutputStream methods = new DataOutputStream(methodBytes);
+	private int methodCount;
+
+	private final int access, thisClass, superClass;
+	@NotNull private final int[] interfaces;
+
+	/**
+	 * @param name the internal name of the class, such as {@code java/lang/Object}
+	 * @param superName the internal name of the superclass
+	 * @param interfaces the internal names of the interfaces
+	 */
+	ClassFileWriter(final int access, @NotNull final String name, @NotNull final String superName, @NotNull final String... interfaces) {
+		this.access = access;
+		thisClass = classRef(name);
+		superClass = classRef(superName);
+		this.interfaces = new int[interfaces.length];
+		for (int i = 0; i < interfaces.length; i++) {
+			this.interfaces[i] = classRef(interfaces[i]);
+		}
+	}
+
+
+	/* constant pool */
+
+	@SneakyThrows
+	int utf8(@NotNull final String value) {
+		final Integer index = entries.get("U" + value);
+		if (index != null) return index;
+		pool.writeByte(UTF8);
+		pool.writeUTF(value); // modified UTF-8, as class files use
+		return add("U" + value);
+	}
+
+	@SneakyThrows
+	int integer(final int value) {
+		final Integer index = entries.get("I" + value);
+		if (index != null) return index;
+		pool.writeByte(INTEGER);
+		pool.writeInt(value);
+		return add("I" + value);
+	}
+
+	int classRef(@NotNull final String internalName) {
+		return reference(CLASS, "C" + internalName, utf8(internalName), -1);
+	}
+
+	int fieldRef(@NotNull final String owner, @NotNull final String name, @NotNull final String descriptor) {
+		return reference(FIELD_REF, "F" + owner + '.' + name + ':' + descriptor, classRef(owner), nameAndType(name, descriptor));
+	}
+
+	int methodRef(@NotNull final String owner, @NotNull final String name, @NotNull final String descriptor) {
+		return reference(METHOD_REF, "M" + owner + '.' + name + descriptor, classRef(owner), nameAndType(name, descriptor));
+	}
+
+	private int nameAndType(@NotNull final String name, @NotNull final String descriptor) {
+		return reference(NAME_AND_TYPE, "N" + name + ':' + descriptor, utf8(name), utf8(descriptor));
+	}
+
+	/** An entry of one or two indices, {@code second} being -1 for one. */
+	@SneakyThrows
+	private int reference(final int tag, @NotNull final String key, final int first, final int second) {
+		final Integer index = entries.get(key);
+		if (index != null) return index;
+		pool.writeByte(tag);
+		pool.writeShort(first);
+		if (second != -1) pool.writeShort(second);
+		return add(key);
+	}
+
+	private int add(@NotNull final String key) {
+		entries.put(key, poolCount);
+		return poolCount++;
+	}
+
+
+	/* members */
+
+	@SneakyThrows
+	void field(final int access, @NotNull final String name, @NotNull final String descriptor) {
+		fields.writeShort(access);
+		fields.writeShort(utf8(name));
+		fields.writeShort(utf8(descriptor));
+		fields.writeShort(0); // attributes
+		fieldCount++;
+	}
+
+	@SneakyThrows
+	void method(final int access, @NotNull final String name, @NotNull final String descriptor, @NotNull final Code code) {
+		methods.writeShort(access);
+		methods.writeShort(utf8(name));
+		methods.writeShort(utf8(descriptor));
+		methods.writeShort(1); // attributes
+		methods.writeShort(utf8("Code"));
+		methods.writeInt(12 + code.bytes.size());
+		methods.writeShort(code.maxStack);
+		methods.writeShort(code.maxLocals);
+		methods.writeInt(code.bytes.size());
+		code.bytes.writeTo(methods);
+		methods.writeShort(0); // exception table
+		methods.writeShort(0); // attributes
+		methodCount++;
+	}
+
+	@NotNull
+	@SneakyThrows
+	byte[] toByteArray() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + fieldBytes.size() + methodBytes.size() + 32);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeShort(0);
+		out.writeShort(VERSION);
+		out.writeShort(poolCount);
+		poolBytes.writeTo(out);
+		out.writeShort(access);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(interfaces.length);
+		for (final int i : interfaces) out.writeShort(i);
+		out.writeShort(fieldCount);
+		fieldBytes.writeTo(out);
+		out.writeShort(methodCount);
+		methodBytes.writeTo(out);
+		out.writeShort(0); // attributes
+		return bytes.toByteArray();
+	}
+
+
+	/** The body of a method, assembled one instruction at a time. */
+	static final class Code {
+
+		/* the opcodes used so far */
+		static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+			ILOAD = 0x15, LLOAD = 0x16, FLOAD = 0x17, DLOAD = 0x18, ALOAD = 0x19, AALOAD = 0x32,
+			IRETURN = 0xAC, LRETURN = 0xAD, FRETURN = 0xAE, DRETURN = 0xAF, ARETURN = 0xB0, RETURN = 0xB1,
+			GETFIELD = 0xB4, PUTFIELD = 0xB5, INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, WIDE = 0xC4;
+
+		@NotNull private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final int maxStack, maxLocals;
+
+		Code(final int maxStack, final int maxLocals) {
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		@NotNull
+		Code op(final int opcode) {
+			bytes.write(opcode);
+			return this;
+		}
+
+		/** An instruction with a one byte operand, such as a local variable index. */
+		@NotNull
+		Code op(final int opcode, final int operand) {
+			bytes.write(opcode);
+			bytes.write(operand);
+			return this;
+		}
+
+		/** An instruction with a two byte operand, such as a constant pool index. */
+		@NotNull
+		Code op2(final int opcode, final int operand) {
+			bytes.write(opcode);
+			bytes.write(operand >>> 8);
+			bytes.write(operand);
+			return this;
+		}
+
+		/** Push an int constant in the smallest form. */
+		@NotNull
+		Code push(@NotNull final ClassFileWriter writer, final int value) {
+			if (value >= -1 && value <= 5) return op(ICONST_0 + value);
+			if (value == (byte) value) return op(BIPUSH, value & 0xFF);
+			if (value == (short) value) return op2(SIPUSH, value & 0xFFFF);
+			return op2(LDC_W, writer.integer(value));
+		}
+
+		/** Load a local variable of a type, returning the number of slots it takes. */
+		int load(@NotNull final Class<?> type, final int index) {
+			final int opcode = type == long.class ? LLOAD : type == float.class ? FLOAD : type == double.class ? DLOAD : type.isPrimitive() ? ILOAD : ALOAD;
+			if (index > 0xFF) {
+				op(WIDE).op2(opcode, index);
+			} else {
+				op(opcode, index);
+			}
+			return type == long.class || type == double.class ? 2 : 1;
+		}
+
+		/** Return a value of a type, or nothing for {@code void}. */
+		@NotNull
+		Code returns(@NotNull final Class<?> type) {
+			return op(type == void.class ? RETURN : type == long.class ? LRETURN : type == float.class ? FRETURN : type == double.class ? DRETURN : type.isPrimitive() ? IRETURN : ARETURN);
+		}
+
+	}
+
+}
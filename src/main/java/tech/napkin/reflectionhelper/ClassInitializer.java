@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Initializes classes the library was handed. Before Java 15 every class can be
+ * found again by its name, so that is how; the multi-release JAR replaces this
+ * class on 15 and later with one that also handles hidden classes, which can't.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class ClassInitializer {
+
+	/**
+	 * Run the static initializer of a class, unless it already has.
+	 *
+	 * @param type a class that is neither a primitive nor an array
+	 * @throws ClassNotFoundException if the class can't be found by its name through its own loader
+	 */
+	static void initialize(@NotNull final Class<?> type) throws ClassNotFoundException {
+		Class.forName(type.getName(), true, type.getClassLoader());
+	}
+
+}
@@ -28,9 +28,414 @@
 package tech.napkin.reflectionhelper;
 
 import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static lombok.AccessLevel.PRIVATE;
 
+/**
+ * Discovery of classes on the class path and module path without loading them.
+ * <p>
+ * Class files are parsed straight from their bytes: JARs are memory-mapped and
+ * their central directory walked by hand, so stored entries are read in place and
+ * deflated ones are inflated into a reused buffer, after which only the constant
+ * pool entries for the class, superclass, interface and annotation names are
+ * decoded. Every class path entry is scanned in parallel. Nothing is defined or
+ * initialized until {@link Info#load(ClassLoader)} is called on a match.
+ *
+ * @noinspection unused
+ */
 @NoArgsConstructor(access = PRIVATE)
 public final class Classes {
+
+	/* zip signatures and offsets, see APPNOTE.TXT */
+	private static final int END_SIGNATURE = 0x06054b50, CENTRAL_SIGNATURE = 0x02014b50, LOCAL_SIGNATURE = 0x04034b50;
+	private static final int END_SIZE = 22, CENTRAL_SIZE = 46, LOCAL_SIZE = 30;
+	private static final int STORED = 0, DEFLATED = 8;
+
+	/** The information read from a class file. */
+	public static final class Info {
+
+		/** The binary name of the class, such as {@code java.util.Map$Entry}. */
+		@NotNull public final String name;
+		/** The binary name of the superclass, {@code null} for {@link Object} and {@code module-info}. */
+		@Nullable public final String superName;
+		/** The binary names of the directly implemented interfaces. */
+		@NotNull public final List<String> interfaces;
+		/** The binary names of the class's annotations, retained at runtime or not. */
+		@NotNull public final List<String> annotations;
+		/** The access flags of the class, as per {@link Modifier}. */
+		public final int access;
+		/** The fields and methods of the class, only read when building a {@link MemberIndex}. */
+		@Nullable final List<MemberIndex.Member> members;
+
+		Info(@NotNull final String name, @Nullable final String superName, @NotNull final List<String> interfaces, @NotNull final List<String> annotations, final int access, @Nullable final List<MemberIndex.Member> members) {
+			this.name = name;
+			this.superName = superName;
+			this.interfaces = interfaces;
+			this.annotations = annotations;
+			this.access = access;
+			this.members = members;
+		}
+
+		/** @return the name of the package of the class, empty for the default package */
+		@NotNull
+		public String packageName() {
+			final int dot = name.lastIndexOf('.');
+			return dot < 0 ? "" : name.substring(0, dot);
+		}
+
+		/**
+		 * Load, but do not initialize, the class.
+		 *
+		 * @param loader the class loader to load the class with
+		 * @return the loaded class
+		 * @throws ClassNotFoundException if the loader cannot find the class
+		 */
+		@NotNull
+		@SneakyThrows(ClassNotFoundException.class)
+		public Class<?> load(@Nullable final ClassLoader loader) {
+			return ReflectionConfig.recordClass(Class.forName(name, false, loader));
+		}
+
+		/**
+		 * Load, but do not initialize, the class with the context class loader.
+		 *
+		 * @return the loaded class
+		 * @throws ClassNotFoundException if the loader cannot find the class
+		 */
+		@NotNull
+		public Class<?> load() {
+			return load(Thread.currentThread().getContextClassLoader());
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+
+	/**
+	 * Predicates to filter scanned classes with. These only consider what is written
+	 * in the class file itself, so they match direct superclasses and interfaces
+	 * only; use {@link Classes#subtypes(Collection, String)} for the transitive
+	 * relation.
+	 */
+	@NoArgsConstructor(access = PRIVATE)
+	public static final class Filter {
+
+		@NotNull
+		public static Predicate<Info> extending(@NotNull final String superclass) {
+			return info -> superclass.equals(info.superName);
+		}
+
+		@NotNull
+		public static Predicate<Info> extending(@NotNull final Class<?> superclass) {
+			return extending(superclass.getName());
+		}
+
+		@NotNull
+		public static Predicate<Info> implementing(@NotNull final String iface) {
+			return info -> info.interfaces.contains(iface);
+		}
+
+		@NotNull
+		public static Predicate<Info> implementing(@NotNull final Class<?> iface) {
+			return implementing(iface.getName());
+		}
+
+		@NotNull
+		public static Predicate<Info> annotatedWith(@NotNull final String annotation) {
+			return info -> info.annotations.contains(annotation);
+		}
+
+		@NotNull
+		public static Predicate<Info> annotatedWith(@NotNull final Class<? extends Annotation> annotation) {
+			return annotatedWith(annotation.getName());
+		}
+
+		/** Match classes in the given package or any of its subpackages. */
+		@NotNull
+		public static Predicate<Info> inPackage(@NotNull final String packageName) {
+			final String prefix = packageName + '.';
+			return info -> info.name.startsWith(prefix);
+		}
+
+		@NotNull
+		public static Predicate<Info> concrete() {
+			return info -> (info.access & (Modifier.ABSTRACT | Modifier.INTERFACE)) == 0;
+		}
+
+	}
+
+
+	/**
+	 * The entries of the class path and module path of the running JVM, from the
+	 * {@code java.class.path} and {@code jdk.module.path} system properties.
+	 *
+	 * @return the class path and module path entries
+	 */
+	@NotNull
+	public static List<Path> classPath() {
+		return Stream.of(System.getProperty("java.class.path"), System.getProperty("jdk.module.path"))
+			.filter(path -> path != null && !path.isEmpty())
+			.flatMap(path -> Arrays.stream(path.split(File.pathSeparator)))
+			.map(Paths::get)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Scan every class on the class path and module path.
+	 *
+	 * @return every class found
+	 */
+	@NotNull
+	public static List<Info> scan() {
+		return scan(classPath(), info -> true);
+	}
+
+	/**
+	 * Scan the class path and module path for classes matching a filter.
+	 *
+	 * @param filter the filter classes must match, see {@link Filter}
+	 * @return the classes matching the filter
+	 */
+	@NotNull
+	public static List<Info> scan(@NotNull final Predicate<? super Info> filter) {
+		return scan(classPath(), filter);
+	}
+
+	/**
+	 * Scan JARs and directories for classes matching a filter. Entries are scanned in
+	 * parallel, and entries that do not exist are skipped. {@code module-info} and
+	 * anything under {@code META-INF}, including multi-release versions, is skipped.
+	 *
+	 * @param entries paths of JARs and class directories
+	 * @param filter the filter classes must match, see {@link Filter}
+	 * @return the classes matching the filter
+	 * @throws IOException if an entry cannot be read
+	 */
+	@NotNull
+	public static List<Info> scan(@NotNull final Collection<Path> entries, @NotNull final Predicate<? super Info> filter) {
+		return scan(entries, filter, false);
+	}
+
+	/** As {@link #scan(Collection, Predicate)}, optionally reading the members of every class. */
+	@NotNull
+	static List<Info> scan(@NotNull final Collection<Path> entries, @NotNull final Predicate<? super Info> filter, final boolean members) {
+		return entries.parallelStream()
+			.flatMap(entry -> scan(entry, filter, members).stream())
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Find every class of a scan that extends or implements the named class, directly
+	 * or through other classes of the scan.
+	 *
+	 * @param scanned the result of a scan
+	 * @param name the binary name of a class or interface
+	 * @return every subclass or implementation of the named class found in the scan
+	 */
+	@NotNull
+	public static List<Info> subtypes(@NotNull final Collection<Info> scanned, @NotNull final String name) {
+		final Map<String, Info> byName = new HashMap<>(scanned.size() * 2);
+		for (final Info info : scanned) byName.put(info.name, info);
+
+		final Map<String, Boolean> known = new HashMap<>();
+		return scanned.stream()
+			.filter(info -> isSubtype(info, name, byName, known))
+			.collect(Collectors.toList());
+	}
+
+	private static boolean isSubtype(@NotNull final Info info, @NotNull final String name, @NotNull final Map<String, Info> byName, @NotNull final Map<String, Boolean> known) {
+		final Boolean cached = known.get(info.name);
+		if (cached != null) return cached;
+		known.put(info.name, false); // guards against malformed cycles
+
+		boolean result = name.equals(info.superName) || info.interfaces.contains(name);
+		if (!result && info.superName != null && byName.containsKey(info.superName)) {
+			result = isSubtype(byName.get(info.superName), name, byName, known);
+		}
+		for (int i = 0; !result && i < info.interfaces.size(); i++) {
+			final Info iface = byName.get(info.interfaces.get(i));
+			result = iface != null && isSubtype(iface, name, byName, known);
+		}
+
+		known.put(info.name, result);
+		return result;
+	}
+
+
+	@NotNull
+	@SneakyThrows(IOException.class)
+	private static List<Info> scan(@NotNull final Path entry, @NotNull final Predicate<? super Info> filter, final boolean members) {
+		final List<Info> found = new ArrayList<>();
+		if (Files.isDirectory(entry)) {
+			scanDirectory(entry, filter, members, found);
+		} else if (Files.isRegularFile(entry)) {
+			scanJar(entry, filter, members, found);
+		}
+		return found;
+	}
+
+	private static void scanDirectory(@NotNull final Path directory, @NotNull final Predicate<? super Info> filter, final boolean members, @NotNull final List<Info> into) throws IOException {
+		final List<Path> files;
+		try (Stream<Path> walk = Files.walk(directory)) {
+			files = walk.filter(path -> isClass(directory.relativize(path).toString().replace(File.separatorChar, '/')))
+				.collect(Collectors.toList());
+		}
+		// class files are too small for mapping them to be worth it
+		for (final Path file : files) {
+			accept(ByteBuffer.wrap(Files.readAllBytes(file)), filter, members, into);
+		}
+	}
+
+	private static void scanJar(@NotNull final Path jar, @NotNull final Predicate<? super Info> filter, final boolean members, @NotNull final List<Info> into) throws IOException {
+		final MappedByteBuffer map;
+		try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				scanZipFile(jar, filter, members, into);
+				return;
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		map.order(ByteOrder.LITTLE_ENDIAN);
+
+		// the end record is followed by at most a 64k comment, so anything before that isn't searched
+		final int floor = Math.max(0, map.limit() - END_SIZE - 0xFFFF);
+		int end = map.limit() - END_SIZE;
+		while (end >= floor && map.getInt(end) != END_SIGNATURE) end--;
+		if (end < floor) {
+			return; // not a zip file
+		}
+
+		final int entries = map.getShort(end + 10) & 0xFFFF;
+		final long directory = map.getInt(end + 16) & 0xFFFFFFFFL;
+		if (entries == 0xFFFF || directory == 0xFFFFFFFFL) {
+			scanZipFile(jar, filter, members, into); // zip64
+			return;
+		}
+
+		final Inflater inflater = new Inflater(true);
+		byte[] input = new byte[8192], output = new byte[8192];
+		try {
+			int p = (int) directory;
+			for (int i = 0; i < entries && map.getInt(p) == CENTRAL_SIGNATURE; i++) {
+				final int method = map.getShort(p + 10) & 0xFFFF;
+				final int compressed = map.getInt(p + 20), size = map.getInt(p + 24);
+				final int nameLength = map.getShort(p + 28) & 0xFFFF;
+				final int extraLength = map.getShort(p + 30) & 0xFFFF, commentLength = map.getShort(p + 32) & 0xFFFF;
+				final int local = map.getInt(p + 42);
+				final String name = name(map, p + CENTRAL_SIZE, nameLength);
+				p += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+
+				if (!isClass(name) || map.getInt(local) != LOCAL_SIGNATURE) continue;
+				final int data = local + LOCAL_SIZE + (map.getShort(local + 26) & 0xFFFF) + (map.getShort(local + 28) & 0xFFFF);
+
+				if (method == STORED) {
+					final ByteBuffer slice = map.duplicate();
+					slice.position(data).limit(data + size);
+					accept(slice, filter, members, into);
+				} else if (method == DEFLATED) {
+					if (input.length < compressed + 1) input = new byte[compressed + 1]; // nowrap wants a dummy byte
+					if (output.length < size) output = new byte[size];
+					final ByteBuffer compressedData = map.duplicate();
+					compressedData.position(data);
+					compressedData.get(input, 0, compressed);
+					input[compressed] = 0;
+
+					inflater.reset();
+					inflater.setInput(input, 0, compressed + 1);
+					final int inflated = inflater.inflate(output, 0, size);
+					accept(ByteBuffer.wrap(output, 0, inflated), filter, members, into);
+				}
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt entry in " + jar, e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/** The slow path, for JARs that cannot be mapped into a single buffer. */
+	private static void scanZipFile(@NotNull final Path jar, @NotNull final Predicate<? super Info> filter, final boolean members, @NotNull final List<Info> into) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			for (final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+				final ZipEntry entry = e.nextElement();
+				if (isClass(entry.getName())) {
+					final byte[] bytes = new byte[(int) entry.getSize()];
+					try (DataInputStream in = new DataInputStream(zip.getInputStream(entry))) {
+						in.readFully(bytes);
+					}
+					accept(ByteBuffer.wrap(bytes), filter, members, into);
+				}
+			}
+		}
+	}
+
+	private static void accept(@NotNull final ByteBuffer classFile, @NotNull final Predicate<? super Info> filter, final boolean members, @NotNull final List<Info> into) {
+		final Info info = ClassFileReader.read(classFile, members);
+		if (info != null && filter.test(info)) {
+			into.add(info);
+		}
+	}
+
+	private static boolean isClass(@NotNull final String entry) {
+		return entry.endsWith(".class") && !entry.startsWith("META-INF/") && !entry.endsWith("module-info.class");
+	}
+
+	/**
+	 * An entry name, decoded as UTF-8 like {@link ZipFile} does by default: binary
+	 * names may well be non-ASCII. Most are ASCII though, so those are copied
+	 * straight out of the buffer.
+	 */
+	@NotNull
+	private static String name(@NotNull final ByteBuffer buffer, final int offset, final int length) {
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			final byte b = buffer.get(offset + i);
+			if (b < 0) {
+				final byte[] bytes = new byte[length];
+				final ByteBuffer name = buffer.duplicate();
+				name.position(offset);
+				name.get(bytes);
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+			chars[i] = (char) b;
+		}
+		return new String(chars);
+	}
+
 }
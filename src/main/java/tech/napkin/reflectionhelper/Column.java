@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.IntStream;
+
+/**
+ * One primitive field of a class, for gathering it from many objects into a
+ * primitive array and scattering an array back into the objects. The accessors
+ * are resolved once, when the column is created, and every element is then a
+ * single exact {@link MethodHandle} invocation, without boxing.
+ * <p>
+ * A field can be gathered into any array its type widens to, so a {@code short}
+ * field can be gathered into an {@code int[]}, {@code long[]} or {@code double[]},
+ * but it can only be scattered from an array of its own type. Gathering and
+ * scattering can be split between threads in chunks of the array, which is only
+ * done for large enough arrays; the objects must then not be modified
+ * concurrently, and each must only appear once when scattering.
+ * <p>
+ * Objects must be instances of the class of the column, and not {@code null}.
+ * Lists that do not support fast random access are copied first.
+ *
+ * @param <T> the class of the objects
+ * @noinspection unused
+ */
+public final class Column<T> {
+
+	/** How many elements each thread handles at a time. */
+	private static final int CHUNK = 1 << 14;
+
+	@NotNull private final Class<T> type;
+	@NotNull private final String name;
+	@NotNull private final Class<?> fieldType;
+
+	/* typed (Object)<primitive>, null where the field does not widen to it */
+	@Nullable private final MethodHandle intGetter, longGetter, doubleGetter;
+	/** Typed {@code (Object, <field type>)void}, {@code null} where the field cannot be written. */
+	@Nullable private final MethodHandle setter;
+
+	private Column(@NotNull final Class<T> type, final int index) {
+		final FieldPlan plan = FieldPlan.of(type);
+		this.type = type;
+		name = plan.names[index];
+		fieldType = plan.types[index];
+		intGetter = widened(plan.getters[index], int.class);
+		longGetter = widened(plan.getters[index], long.class);
+		doubleGetter = widened(plan.getters[index], double.class);
+		setter = plan.setters[index];
+	}
+
+	/**
+	 * Resolve a primitive instance field, declared by the class or inherited.
+	 *
+	 * @param type the class of the objects
+	 * @param name the name of the field
+	 * @return a column of the field
+	 * @throws NoSuchFieldException (sneaky) if there is no such instance field
+	 * @throws IllegalArgumentException if the field is not primitive
+	 */
+	@NotNull
+	@SneakyThrows(NoSuchFieldException.class)
+	public static <T> Column<T> of(@NotNull final Class<T> type, @NotNull final String name) {
+		final int index = FieldPlan.of(type).indexOf(name);
+		if (index == -1) throw new NoSuchFieldException(type.getName() + '.' + name);
+		final Class<?> fieldType = FieldPlan.of(type).types[index];
+		if (!fieldType.isPrimitive()) {
+			throw new IllegalArgumentException(type.getName() + '.' + name + " is not primitive, but " + fieldType.getName());
+		}
+		return new Column<>(type, index);
+	}
+
+	/** The class of the objects. */
+	@NotNull
+	public Class<T> type() {
+		return type;
+	}
+
+	/** The type of the field. */
+	@NotNull
+	public Class<?> fieldType() {
+		return fieldType;
+	}
+
+
+	/* int */
+
+	@NotNull
+	public int[] gatherInts(@NotNull final List<? extends T> objects) {
+		return gatherInts(objects, new int[objects.size()], false);
+	}
+
+	@NotNull
+	public int[] gatherInts(@NotNull final T[] objects) {
+		return gatherInts(Arrays.asList(objects), new int[objects.length], false);
+	}
+
+	@NotNull
+	public int[] gatherInts(@NotNull final T[] objects, @NotNull final int[] into, final boolean parallel) {
+		return gatherInts(Arrays.asList(objects), into, parallel);
+	}
+
+	/**
+	 * Read the field of every object into an array.
+	 *
+	 * @param objects the objects to read
+	 * @param into the array to read into, at the same indices as the objects
+	 * @param parallel whether to split the work between threads
+	 * @return {@code into}
+	 */
+	@NotNull
+	public int[] gatherInts(@NotNull final List<? extends T> objects, @NotNull final int[] into, final boolean parallel) {
+		final MethodHandle getter = getter(intGetter, int.class);
+		final List<? extends T> list = randomAccess(objects, into.length);
+		chunked(list.size(), parallel, (from, to) -> gatherInts(getter, list, into, from, to));
+		return into;
+	}
+
+	public void scatterInts(@NotNull final T[] objects, @NotNull final int[] from, final boolean parallel) {
+		scatterInts(Arrays.asList(objects), from, parallel);
+	}
+
+	/**
+	 * Write an array into the field of every object.
+	 *
+	 * @param objects the objects to write
+	 * @param from the values to write, at the same indices as the objects
+	 * @param parallel whether to split the work between threads
+	 */
+	public void scatterInts(@NotNull final List<? extends T> objects, @NotNull final int[] from, final boolean parallel) {
+		final MethodHandle setter = setter(int.class);
+		final List<? extends T> list = randomAccess(objects, from.length);
+		chunked(list.size(), parallel, (start, end) -> scatterInts(setter, list, from, start, end));
+	}
+
+	@SneakyThrows
+	private static void gatherInts(@NotNull final MethodHandle getter, @NotNull final List<?> objects, @NotNull final int[] into, final int from, final int to) {
+		for (int i = from; i < to; i++) into[i] = (int) getter.invokeExact(objects.get(i));
+	}
+
+	@SneakyThrows
+	private static void scatterInts(@NotNull final MethodHandle setter, @NotNull final List<?> objects, @NotNull final int[] from, final int start, final int end) {
+		for (int i = start; i < end; i++) setter.invokeExact(objects.get(i), from[i]);
+	}
+
+
+	/* long */
+
+	@NotNull
+	public long[] gatherLongs(@NotNull final List<? extends T> objects) {
+		return gatherLongs(objects, new long[objects.size()], false);
+	}
+
+	@NotNull
+	public long[] gatherLongs(@NotNull final T[] objects) {
+		return gatherLongs(Arrays.asList(objects), new long[objects.length], false);
+	}
+
+	@NotNull
+	public long[] gatherLongs(@NotNull final T[] objects, @NotNull final long[] into, final boolean parallel) {
+		return gatherLongs(Arrays.asList(objects), into, parallel);
+	}
+
+	/** @see #gatherInts(List, int[], boolean) */
+	@NotNull
+	public long[] gatherLongs(@NotNull final List<? extends T> objects, @NotNull final long[] into, final boolean parallel) {
+		final MethodHandle getter = getter(longGetter, long.class);
+		final List<? extends T> list = randomAccess(objects, into.length);
+		chunked(list.size(), parallel, (from, to) -> gatherLongs(getter, list, into, from, to));
+		return into;
+	}
+
+	public void scatterLongs(@NotNull final T[] objects, @NotNull final long[] from, final boolean parallel) {
+		scatterLongs(Arrays.asList(objects), from, parallel);
+	}
+
+	/** @see #scatterInts(List, int[], boolean) */
+	public void scatterLongs(@NotNull final List<? extends T> objects, @NotNull final long[] from, final boolean parallel) {
+		final MethodHandle setter = setter(long.class);
+		final List<? extends T> list = randomAccess(objects, from.length);
+		chunked(list.size(), parallel, (start, end) -> scatterLongs(setter, list, from, start, end));
+	}
+
+	@SneakyThrows
+	private static void gatherLongs(@NotNull final MethodHandle getter, @NotNull final List<?> objects, @NotNull final long[] into, final int from, final int to) {
+		for (int i = from; i < to; i++) into[i] = (long) getter.invokeExact(objects.get(i));
+	}
+
+	@SneakyThrows
+	private static void scatterLongs(@NotNull final MethodHandle setter, @NotNull final List<?> objects, @NotNull final long[] from, final int start, final int end) {
+		for (int i = start; i < end; i++) setter.invokeExact(objects.get(i), from[i]);
+	}
+
+
+	/* double */
+
+	@NotNull
+	public double[] gatherDoubles(@NotNull final List<? extends T> objects) {
+		return gatherDoubles(objects, new double[objects.size()], false);
+	}
+
+	@NotNull
+	public double[] gatherDoubles(@NotNull final T[] objects) {
+		return gatherDoubles(Arrays.asList(objects), new double[objects.length], false);
+	}
+
+	@NotNull
+	public double[] gatherDoubles(@NotNull final T[] objects, @NotNull final double[] into, final boolean parallel) {
+		return gatherDoubles(Arrays.asList(objects), into, parallel);
+	}
+
+	/** @see #gatherInts(List, int[], boolean) */
+	@NotNull
+	public double[] gatherDoubles(@NotNull final List<? extends T> objects, @NotNull final double[] into, final boolean parallel) {
+		final MethodHandle getter = getter(doubleGetter, double.class);
+		final List<? extends T> list = randomAccess(objects, into.length);
+		chunked(list.size(), parallel, (from, to) -> gatherDoubles(getter, list, into, from, to));
+		return into;
+	}
+
+	public void scatterDoubles(@NotNull final T[] objects, @NotNull final double[] from, final boolean parallel) {
+		scatterDoubles(Arrays.asList(objects), from, parallel);
+	}
+
+	/** @see #scatterInts(List, int[], boolean) */
+	public void scatterDoubles(@NotNull final List<? extends T> objects, @NotNull final double[] from, final boolean parallel) {
+		final MethodHandle setter = setter(double.class);
+		final List<? extends T> list = randomAccess(objects, from.length);
+		chunked(list.size(), parallel, (start, end) -> scatterDoubles(setter, list, from, start, end));
+	}
+
+	@SneakyThrows
+	private static void gatherDoubles(@NotNull final MethodHandle getter, @NotNull final List<?> objects, @NotNull final double[] into, final int from, final int to) {
+		for (int i = from; i < to; i++) into[i] = (double) getter.invokeExact(objects.get(i));
+	}
+
+	@SneakyThrows
+	private static void scatterDoubles(@NotNull final MethodHandle setter, @NotNull final List<?> objects, @NotNull final double[] from, final int start, final int end) {
+		for (int i = start; i < end; i++) setter.invokeExact(objects.get(i), from[i]);
+	}
+
+
+	@NotNull
+	private MethodHandle getter(@Nullable final MethodHandle getter, @NotNull final Class<?> into) {
+		if (getter == null) {
+			throw new UnsupportedOperationException(fieldType.getName() + ' ' + type.getName() + '.' + name + " cannot be gathered into " + into.getName() + "[]");
+		}
+		return getter;
+	}
+
+	@NotNull
+	private MethodHandle setter(@NotNull final Class<?> from) {
+		if (from != fieldType) {
+			throw new UnsupportedOperationException(fieldType.getName() + ' ' + type.getName() + '.' + name + " cannot be scattered from " + from.getName() + "[]");
+		}
+		if (setter == null) throw new UnsupportedOperationException(type.getName() + '.' + name + " cannot be written");
+		return setter;
+	}
+
+	/** Typed {@code (Object)<into>}, or {@code null} if the field type does not widen to it. */
+	@Nullable
+	private static MethodHandle widened(@NotNull final MethodHandle getter, @NotNull final Class<?> into) {
+		try {
+			return getter.asType(MethodType.methodType(into, Object.class));
+		} catch (final WrongMethodTypeException e) {
+			return null;
+		}
+	}
+
+	@NotNull
+	private static <T> List<? extends T> randomAccess(@NotNull final List<? extends T> objects, final int length) {
+		if (length < objects.size()) {
+			throw new IllegalArgumentException("Array of length " + length + " is too short for " + objects.size() + " objects");
+		}
+		return objects instanceof RandomAccess ? objects : new ArrayList<>(objects);
+	}
+
+	private static void chunked(final int size, final boolean parallel, @NotNull final Range range) {
+		if (!parallel || size < 2 * CHUNK) {
+			range.run(0, size);
+		} else {
+			IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel()
+				.forEach(chunk -> range.run(chunk * CHUNK, Math.min(size, (chunk + 1) * CHUNK)));
+		}
+	}
+
+	@FunctionalInterface
+	private interface Range {
+		void run(int from, int to);
+	}
+
+}
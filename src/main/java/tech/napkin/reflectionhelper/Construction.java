@@ -28,13 +28,23 @@
 package tech.napkin.reflectionhelper;
 
 import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -73,8 +83,166 @@ public final class Construction {
 	 * @throws InvocationTargetException if the constructor throws an exception
 	 */
 	@NotNull
+	@SuppressWarnings("unchecked")
 	public static <T> T construct(@NotNull final Constructor<T> constructor, @Range(from = -1, to = 2) final int permission, @NotNull final Object... args) throws IllegalAccessException, InstantiationException, InvocationTargetException {
-		return _Permission.modifyPermission(constructor, permission).newInstance(args);
+		final Object generated = generated(constructor.getDeclaringClass(), permission, constructor.getParameterTypes(), args);
+		if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+		return _Permission.modifyPermission(ReflectionConfig.recordMethod(constructor), permission).newInstance(args);
+	}
+
+	/**
+	 * Construct a batch of objects from a provided constructor, all with the same
+	 * arguments, filling the provided array. The constructor is resolved to a
+	 * {@link MethodHandle} and its permission modified once for the whole batch,
+	 * rather than once per object; likewise a generated accessor is only looked up
+	 * once.
+	 * <p>
+	 * Unlike {@link Constructor#newInstance}, an {@link Error} thrown while
+	 * constructing is rethrown as it is rather than wrapped.
+	 *
+	 * @param constructor a Constructor to be used for construction.
+	 * @param permission an integer determining the permissions to be granted when
+	 *                   constructing, as for {@link #construct(Constructor, int, Object...)}
+	 * @param into the array to fill, whose length is the number of objects constructed
+	 * @param args any arguments to be passed to the constructor, for every object
+	 * @param <T> the type of the objects to be constructed
+	 * @return the passed array
+	 * @throws IllegalArgumentException if the arguments don't fit the constructor's parameters
+	 * @throws IllegalAccessException if permission < 0 and access isn't allowed
+	 * @throws InvocationTargetException if the constructor throws an exception
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> T[] constructAll(@NotNull final Constructor<T> constructor, @Range(from = -1, to = 2) final int permission, @NotNull final T[] into, @NotNull final Object... args) throws IllegalAccessException, InvocationTargetException {
+		final Class<?> clazz = constructor.getDeclaringClass();
+		final Class<?>[] parameterTypes = constructor.getParameterTypes();
+		if (!accepts(parameterTypes, args)) {
+			throw new IllegalArgumentException("Arguments " + Arrays.stream(argumentTypes(args))
+				.map(type -> type == null ? "null" : type.getName()).collect(Collectors.joining(", ", "(", ")")) + " don't fit " + constructor);
+		}
+		if (into.length == 0) return into;
+
+		final Accessors.Accessor accessor = permission == -1 ? null : Accessors.of(clazz);
+		if (accessor != null) {
+			try {
+				final Object first = accessor.construct(parameterTypes, args);
+				if (first != Accessors.Accessor.NOT_HANDLED) {
+					into[0] = (T) first;
+					for (int i = 1; i < into.length; i++) {
+						into[i] = (T) accessor.construct(parameterTypes, args);
+					}
+					return into;
+				}
+			} catch (final Error e) {
+				throw e;
+			} catch (final Throwable t) { // the arguments were checked above, so this came from the constructor
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		final MethodHandle handle = MethodHandles.lookup()
+			.unreflectConstructor(_Permission.modifyPermission(ReflectionConfig.recordMethod(constructor), permission))
+			.asSpreader(Object[].class, parameterTypes.length)
+			.asType(MethodType.methodType(Object.class, Object[].class));
+		try {
+			for (int i = 0; i < into.length; i++) {
+				into[i] = (T) (Object) handle.invokeExact(args);
+			}
+		} catch (final Error e) {
+			throw e;
+		} catch (final Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+		return into;
+	}
+
+	/**
+	 * Create an instance of a class without calling any of its constructors, leaving
+	 * all of its fields at their default values. This is mostly useful for
+	 * deserialization, where every field is set afterwards anyway.
+	 * <p>
+	 * Not in either subclass as it takes no arguments to match a constructor against.
+	 *
+	 * @param clazz the class to be instantiated
+	 * @param <T> the type of the object to be created
+	 * @return an uninitialized instance of the specified type
+	 * @throws InstantiationException if the class is abstract, an interface, an array or a primitive
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> T allocate(@NotNull final Class<T> clazz) throws InstantiationException {
+		return (T) UnsafeAccess.unsafe.allocateInstance(ReflectionConfig.recordAllocation(clazz));
+	}
+
+	/**
+	 * Construct an object through the {@link Accessors.Accessor} generated for its
+	 * class, if there is one covering the constructor with the given parameter types.
+	 * A permission of -1 takes access away, so it always goes through reflection, as
+	 * do arguments that don't fit, so that they are rejected the same way. As in
+	 * {@link #constructAll(Constructor, int, Object[], Object...)}, an {@link Error}
+	 * is rethrown as it is.
+	 *
+	 * @return the constructed object, or {@link Accessors.Accessor#NOT_HANDLED}
+	 * @throws InvocationTargetException if the constructor throws an exception
+	 */
+	private static Object generated(@NotNull final Class<?> clazz, final int permission, @NotNull final Class<?>[] parameterTypes, @NotNull final Object[] args) throws InvocationTargetException {
+		final Accessors.Accessor accessor = permission == -1 ? null : Accessors.of(clazz);
+		if (accessor == null || Arrays.asList(parameterTypes).contains(null) || !accepts(parameterTypes, args)) {
+			return Accessors.Accessor.NOT_HANDLED; // null arguments leave a parameter type unknown
+		}
+		try {
+			return accessor.construct(parameterTypes, args);
+		} catch (final Error e) {
+			throw e;
+		} catch (final Throwable t) { // the arguments were checked above, so this came from the constructor
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/** The classes of the arguments, with {@code null} for {@code null} arguments. */
+	@NotNull
+	private static Class<?>[] argumentTypes(@NotNull final Object[] args) {
+		final Class<?>[] types = new Class<?>[args.length];
+		for (int i = 0; i < args.length; i++) {
+			types[i] = args[i] == null ? null : args[i].getClass();
+		}
+		return types;
+	}
+
+	/**
+	 * Find the declared constructor to call with the arguments. One whose parameter
+	 * types are exactly the classes of the arguments is preferred; otherwise the
+	 * first one that accepts them is used, where a primitive parameter accepts its
+	 * wrapper and a reference parameter accepts {@code null}.
+	 *
+	 * @throws NoSuchMethodException if no declared constructor accepts the arguments
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	private static <T> Constructor<T> matching(@NotNull final Class<T> clazz, @NotNull final Class<?>[] types, @NotNull final Object[] args) throws NoSuchMethodException {
+		if (Arrays.stream(types).allMatch(Objects::nonNull)) {
+			try {
+				return clazz.getDeclaredConstructor(types);
+			} catch (final NoSuchMethodException ignored) {
+				// look for primitive parameters below
+			}
+		}
+
+		for (final Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+			if (accepts(constructor.getParameterTypes(), args)) return (Constructor<T>) constructor;
+		}
+		throw new NoSuchMethodException(clazz.getName() + ".<init>" + Arrays.stream(types)
+			.map(type -> type == null ? "null" : type.getName()).collect(Collectors.joining(", ", "(", ")")));
+	}
+
+	private static boolean accepts(@NotNull final Class<?>[] parameterTypes, @NotNull final Object[] args) {
+		if (parameterTypes.length != args.length) return false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] == null ? parameterTypes[i].isPrimitive() : !MethodType.methodType(parameterTypes[i]).wrap().returnType().isInstance(args[i])) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -102,8 +270,34 @@ public final class Construction {
 		 * @throws InvocationTargetException if the constructor throws an exception
 		 */
 		@NotNull
+		@SuppressWarnings("unchecked")
 		public static <T> T construct(@NotNull final Class<T> clazz, @Range(from = -1, to = 2) final int permission, @NotNull final Object... args) throws NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException {
-			return Construction.construct(clazz.getDeclaredConstructor(Arrays.stream(args).map(Object::getClass).toArray(Class<?>[]::new)), permission, args);
+			final Class<?>[] types = argumentTypes(args);
+			final Object generated = generated(clazz, permission, types, args);
+			if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+			return Construction.construct(matching(clazz, types, args), permission, args);
+		}
+
+
+		/**
+		 * Construct a batch of new instances of the passed class, all with the same
+		 * arguments, filling the provided array. The constructor is looked up once for
+		 * the whole batch.
+		 *
+		 * @param clazz the class to initialize
+		 * @param permission an integer determining the permissions to be granted when
+		 *                   constructing, as for {@link #construct(Class, int, Object...)}
+		 * @param into the array to fill, whose length is the number of objects constructed
+		 * @param args any arguments to be passed to the constructor, for every object
+		 * @param <T> the type of the objects to be constructed
+		 * @return the passed array
+		 * @throws NoSuchMethodException if no matching constructor is found
+		 * @throws IllegalAccessException if permission < 0 and access isn't allowed
+		 * @throws InvocationTargetException if the constructor throws an exception
+		 */
+		@NotNull
+		public static <T> T[] constructAll(@NotNull final Class<T> clazz, @Range(from = -1, to = 2) final int permission, @NotNull final T[] into, @NotNull final Object... args) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
+			return Construction.constructAll(matching(clazz, argumentTypes(args), args), permission, into, args);
 		}
 
 
@@ -129,7 +323,7 @@ public final class Construction {
 		 */
 		@NotNull
 		public static <T> Constructor<T> classConstruct(@NotNull final Class<T> clazz, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... classes) throws NoSuchMethodException {
-			return _Permission.modifyPermission(clazz.getDeclaredConstructor(classes), permission);
+			return _Permission.modifyPermission(ReflectionConfig.recordMethod(clazz.getDeclaredConstructor(classes)), permission);
 		}
 
 	}
@@ -156,7 +350,11 @@ public final class Construction {
 		 * @throws InvocationTargetException if the constructor throws an exception
 		 */
 		public static Object construct(@NotNull final String clazz, final @Range(from = -1, to = 2) int permission, @NotNull final Object... args) throws NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException, ClassNotFoundException {
-			return Construction.construct(Class.forName(clazz).getDeclaredConstructor(Arrays.stream(args).map(Object::getClass).toArray(Class<?>[]::new)), permission, args);
+			final Class<?> type = ReflectionConfig.recordClass(Class.forName(clazz));
+			final Class<?>[] types = argumentTypes(args);
+			final Object generated = generated(type, permission, types, args);
+			if (generated != Accessors.Accessor.NOT_HANDLED) return generated;
+			return Construction.construct(matching(type, types, args), permission, args);
 		}
 
 
@@ -181,10 +379,108 @@ public final class Construction {
 		 */
 		@NotNull
 		public static Constructor<?> classConstruct(@NotNull final String clazz, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... classes) throws NoSuchMethodException, ClassNotFoundException {
-			return _Permission.modifyPermission(Class.forName(clazz).getDeclaredConstructor(classes), permission);
+			return _Permission.modifyPermission(ReflectionConfig.recordMethod(Class.forName(clazz).getDeclaredConstructor(classes)), permission);
 		}
 
 	}
 
-}
 
+	/**
+	 * A pool of reusable instances of one class, for types that are recycled often
+	 * enough that allocating them shows up.
+	 * <p>
+	 * Each thread has its own stripe of idle instances, so acquiring and releasing
+	 * never contend; an instance released on another thread than it was acquired on
+	 * simply joins that thread's stripe. Every stripe holds at most
+	 * {@code capacity} idle instances, and any released beyond that are left to the
+	 * garbage collector. The reset hook runs on release, so idle instances don't
+	 * keep what they referenced alive.
+	 *
+	 * @param <T> the type of the pooled objects
+	 */
+	public static final class Pool<T> {
+
+		@NotNull private final Supplier<? extends T> factory;
+		@Nullable private final Consumer<? super T> reset;
+		private final int capacity;
+
+		@NotNull private final ThreadLocal<ArrayDeque<T>> stripes;
+
+		@NotNull private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+		@NotNull private static final Object[] NO_ARGS = new Object[0];
+
+		/**
+		 * @param factory creates an instance when the thread's stripe is empty
+		 * @param reset returns a released instance to its initial state, or {@code null}
+		 * @param capacity the maximum number of idle instances per thread
+		 */
+		public Pool(@NotNull final Supplier<? extends T> factory, @Nullable final Consumer<? super T> reset, @Range(from = 0, to = Integer.MAX_VALUE) final int capacity) {
+			if (capacity < 0) throw new IllegalArgumentException("Negative capacity: " + capacity);
+			this.factory = factory;
+			this.reset = reset;
+			this.capacity = capacity;
+			stripes = ThreadLocal.withInitial(() -> new ArrayDeque<>(Math.min(capacity, 16)));
+		}
+
+		/**
+		 * A pool creating its instances with the no-args constructor of a class, which
+		 * may be private. The constructor is resolved once, here; the class's generated
+		 * accessor is used instead when it covers the constructor.
+		 *
+		 * @param permission an integer determining the permissions to be granted when
+		 *                   constructing, as for {@link Construction#construct(Constructor, int, Object...)}
+		 * @throws NoSuchMethodException if the class has no no-args constructor
+		 * @throws IllegalAccessException if permission < 0 and access isn't allowed
+		 */
+		public Pool(@NotNull final Class<T> clazz, @Range(from = -1, to = 2) final int permission, @Nullable final Consumer<? super T> reset, @Range(from = 0, to = Integer.MAX_VALUE) final int capacity) throws NoSuchMethodException, IllegalAccessException {
+			this(factory(clazz, permission), reset, capacity);
+		}
+
+		@NotNull
+		private static <T> Supplier<T> factory(@NotNull final Class<T> clazz, final int permission) throws NoSuchMethodException, IllegalAccessException {
+			final Accessors.Accessor accessor = permission == -1 ? null : Accessors.of(clazz);
+			final MethodHandle constructor = MethodHandles.lookup()
+				.unreflectConstructor(Visible.classConstruct(clazz, permission))
+				.asType(MethodType.methodType(Object.class));
+			return () -> create(accessor, constructor);
+		}
+
+		/** Whatever the constructor throws is thrown from {@link #acquire()} as it is. */
+		@NotNull
+		@SneakyThrows
+		@SuppressWarnings("unchecked")
+		private static <T> T create(@Nullable final Accessors.Accessor accessor, @NotNull final MethodHandle constructor) {
+			if (accessor != null) {
+				final Object generated = accessor.construct(NO_PARAMETERS, NO_ARGS);
+				if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+			}
+			return (T) (Object) constructor.invokeExact();
+		}
+
+		/** @return an idle instance of this thread, or a new one if there is none */
+		@NotNull
+		public T acquire() {
+			final T pooled = stripes.get().pollLast();
+			return pooled != null ? pooled : factory.get();
+		}
+
+		/**
+		 * Reset an instance and make it idle, to be acquired again by this thread.
+		 * The instance must not be used after being released.
+		 */
+		public void release(@NotNull final T instance) {
+			final ArrayDeque<T> stripe = stripes.get();
+			if (stripe.size() < capacity) {
+				if (reset != null) reset.accept(instance);
+				stripe.addLast(instance);
+			}
+		}
+
+		/** Drop the idle instances of this thread. */
+		public void clear() {
+			stripes.get().clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * The members a class declares, so that asking whether it has one is a hash
+ * lookup rather than a {@code getDeclared*} call that throws when it doesn't.
+ * Built on first use per class; {@code getDeclared*} is only called on a hit, for
+ * a fresh copy of the member that callers are free to modify.
+ * <p>
+ * The same copies back an index of the members by annotation, built the first
+ * time each annotation is asked for, so that finding the annotated members of a
+ * class is a map lookup rather than a scan over all of them on every call. The
+ * index itself is never handed out: callers get fresh copies of the members it
+ * lists, like {@code getDeclared*} would give them.
+ */
+final class DeclaredMembers {
+
+	private static final Method[] NONE = new Method[0];
+
+	private static final ClassValue<DeclaredMembers> members = new ClassValue<DeclaredMembers>() {
+		@Override
+		protected DeclaredMembers computeValue(final Class<?> type) {
+			return new DeclaredMembers(type);
+		}
+	};
+
+	@NotNull private final Class<?> type;
+
+	private final Map<String, Field> fields = new HashMap<>();
+
+	/** Every declared method, by name. */
+	private final Map<String, Method[]> methods = new HashMap<>();
+
+	@NotNull private final Constructor<?>[] constructors;
+
+	/** Members by annotation type, filled on demand. */
+	private final Map<Class<? extends Annotation>, List<Field>> annotatedFields = new ConcurrentHashMap<>();
+	private final Map<Class<? extends Annotation>, List<Method>> annotatedMethods = new ConcurrentHashMap<>();
+	private final Map<Class<? extends Annotation>, List<Constructor<?>>> annotatedConstructors = new ConcurrentHashMap<>();
+
+	private DeclaredMembers(@NotNull final Class<?> type) {
+		this.type = type;
+		for (final Field field : type.getDeclaredFields()) {
+			fields.put(field.getName(), field);
+		}
+		for (final Method method : type.getDeclaredMethods()) {
+			methods.merge(method.getName(), new Method[]{method}, DeclaredMembers::concat);
+		}
+		constructors = type.getDeclaredConstructors();
+	}
+
+	@NotNull
+	static DeclaredMembers of(@NotNull final Class<?> type) {
+		return members.get(type);
+	}
+
+	boolean hasField(@NotNull final String name) {
+		return fields.containsKey(name);
+	}
+
+	boolean hasMethod(@NotNull final String name, @NotNull final Class<?>[] parameterTypes) {
+		return method(name, parameterTypes) != null;
+	}
+
+	boolean hasConstructor(@NotNull final Class<?>[] parameterTypes) {
+		return find(constructors, parameterTypes) != null;
+	}
+
+
+	/* annotations; the index holds this class's own members, so only copies of them are returned */
+
+	@NotNull
+	List<Field> fieldsAnnotatedWith(@NotNull final Class<? extends Annotation> annotation) {
+		return copies(annotatedFields.computeIfAbsent(annotation, a -> annotated(fields.values(), a)), this::copy);
+	}
+
+	@NotNull
+	List<Method> methodsAnnotatedWith(@NotNull final Class<? extends Annotation> annotation) {
+		return copies(annotatedMethods.computeIfAbsent(annotation, a -> {
+			final List<Method> all = new ArrayList<>();
+			for (final Method[] overloads : methods.values()) all.addAll(Arrays.asList(overloads));
+			return annotated(all, a);
+		}), this::copy);
+	}
+
+	@NotNull
+	List<Constructor<?>> constructorsAnnotatedWith(@NotNull final Class<? extends Annotation> annotation) {
+		return copies(annotatedConstructors.computeIfAbsent(annotation, a -> annotated(Arrays.asList(constructors), a)), this::copy);
+	}
+
+	@Nullable
+	<A extends Annotation> A fieldAnnotation(@NotNull final String name, @NotNull final Class<A> annotation) {
+		final Field field = fields.get(name);
+		return field == null ? null : field.getDeclaredAnnotation(annotation);
+	}
+
+	@Nullable
+	<A extends Annotation> A methodAnnotation(@NotNull final String name, @NotNull final Class<?>[] parameterTypes, @NotNull final Class<A> annotation) {
+		final Method method = method(name, parameterTypes);
+		return method == null ? null : method.getDeclaredAnnotation(annotation);
+	}
+
+	@Nullable
+	<A extends Annotation> A constructorAnnotation(@NotNull final Class<?>[] parameterTypes, @NotNull final Class<A> annotation) {
+		final Constructor<?> constructor = find(constructors, parameterTypes);
+		return constructor == null ? null : constructor.getDeclaredAnnotation(annotation);
+	}
+
+
+	/** The method with the most specific return type, as {@link Class#getDeclaredMethod} picks. */
+	@Nullable
+	private Method method(@NotNull final String name, @NotNull final Class<?>[] parameterTypes) {
+		Method found = null;
+		for (final Method method : methods.getOrDefault(name, NONE)) {
+			if (method.getParameterCount() == parameterTypes.length && Arrays.equals(method.getParameterTypes(), parameterTypes)
+				&& (found == null || found.getReturnType().isAssignableFrom(method.getReturnType()))) {
+				found = method;
+			}
+		}
+		return found;
+	}
+
+	@Nullable
+	private static <T extends Executable> T find(@NotNull final T[] executables, @NotNull final Class<?>[] parameterTypes) {
+		for (final T executable : executables) {
+			if (executable.getParameterCount() == parameterTypes.length && Arrays.equals(executable.getParameterTypes(), parameterTypes)) return executable;
+		}
+		return null;
+	}
+
+	@NotNull
+	@SneakyThrows(NoSuchFieldException.class)
+	private Field copy(@NotNull final Field field) {
+		return type.getDeclaredField(field.getName());
+	}
+
+	/** A copy of the method, looked for among all of them when it is a bridge that {@link Class#getDeclaredMethod} passes over. */
+	@NotNull
+	@SneakyThrows(NoSuchMethodException.class)
+	private Method copy(@NotNull final Method method) {
+		final Method copy = type.getDeclaredMethod(method.getName(), method.getParameterTypes());
+		if (copy.equals(method)) return copy;
+		for (final Method candidate : type.getDeclaredMethods()) {
+			if (candidate.equals(method)) return candidate;
+		}
+		throw new NoSuchMethodException(method.toString());
+	}
+
+	@NotNull
+	@SneakyThrows(NoSuchMethodException.class)
+	private Constructor<?> copy(@NotNull final Constructor<?> constructor) {
+		return type.getDeclaredConstructor(constructor.getParameterTypes());
+	}
+
+	@NotNull
+	private static <T> List<T> copies(@NotNull final List<T> members, @NotNull final UnaryOperator<T> copy) {
+		if (members.isEmpty()) return Collections.emptyList();
+		final List<T> copies = new ArrayList<>(members.size());
+		for (final T member : members) copies.add(copy.apply(member));
+		return Collections.unmodifiableList(copies);
+	}
+
+	@NotNull
+	private static <T extends AnnotatedElement> List<T> annotated(@NotNull final Iterable<T> members, @NotNull final Class<? extends Annotation> annotation) {
+		final List<T> annotated = new ArrayList<>();
+		for (final T member : members) {
+			if (member.getDeclaredAnnotation(annotation) != null) annotated.add(member);
+		}
+		return annotated.isEmpty() ? Collections.emptyList() : annotated;
+	}
+
+	@NotNull
+	private static Method[] concat(@NotNull final Method[] a, @NotNull final Method[] b) {
+		final Method[] both = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, both, a.length, b.length);
+		return both;
+	}
+
+}
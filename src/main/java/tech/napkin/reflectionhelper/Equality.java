@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Field-by-field {@code equals}, {@code hashCode} and ordering for classes that
+ * don't implement them, or whose implementations shouldn't be trusted.
+ * <p>
+ * Every class gets a cached plan over the non-transient instance fields of its
+ * {@link FieldPlan}: one {@link MethodHandle} per field that reads the field of
+ * both objects and compares them, so primitives are never boxed. Reference fields
+ * are compared with {@link Objects#deepEquals}, so arrays are compared by content.
+ * Float and double fields follow {@link Double#equals}, as {@link Arrays#equals}
+ * does, so {@code NaN} equals itself and {@code 0.0} does not equal {@code -0.0}.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Equality {
+
+	private static final ClassValue<Plan> plans = new ClassValue<Plan>() {
+		@Override
+		protected Plan computeValue(final Class<?> type) {
+			return new Plan(FieldPlan.of(type));
+		}
+	};
+
+	@NotNull private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+
+	/**
+	 * Compare two objects field by field. Objects of different classes are never
+	 * equal.
+	 *
+	 * @return whether both are null, or of the same class with equal fields
+	 */
+	@SneakyThrows
+	public static boolean equals(@Nullable final Object a, @Nullable final Object b) {
+		if (a == b) return true;
+		if (a == null || b == null || a.getClass() != b.getClass()) return false;
+		for (final MethodHandle equals : plans.get(a.getClass()).equals) {
+			if (!(boolean) equals.invokeExact(a, b)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Hash an object field by field, combining the hashes of the fields the way
+	 * {@link Arrays#hashCode(Object[])} does.
+	 *
+	 * @return the hash, or 0 for null
+	 */
+	@SneakyThrows
+	public static int hashCode(@Nullable final Object object) {
+		if (object == null) return 0;
+		int hash = 1;
+		for (final MethodHandle hashCode : plans.get(object.getClass()).hashCodes) {
+			hash = 31 * hash + (int) hashCode.invokeExact(object);
+		}
+		return hash;
+	}
+
+	/**
+	 * A comparator ordering instances of a class by their fields, in declaration
+	 * order with superclass fields first. Primitive fields are compared as their
+	 * wrapper's {@code compare} method does. Reference fields are only compared if
+	 * their declared type is {@link Comparable}, with nulls first; other fields are
+	 * ignored.
+	 * <p>
+	 * Only instances of exactly the given class can be compared.
+	 *
+	 * @param type the class to compare the instances of
+	 * @return the cached comparator
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> Comparator<T> comparator(@NotNull final Class<T> type) {
+		return (Comparator<T>) plans.get(type).comparator;
+	}
+
+
+	/* field comparisons, resolved by name and parameter type */
+
+	private static boolean same(final boolean a, final boolean b) { return a == b; }
+	private static boolean same(final byte a, final byte b) { return a == b; }
+	private static boolean same(final char a, final char b) { return a == b; }
+	private static boolean same(final short a, final short b) { return a == b; }
+	private static boolean same(final int a, final int b) { return a == b; }
+	private static boolean same(final long a, final long b) { return a == b; }
+	private static boolean same(final float a, final float b) { return Float.floatToIntBits(a) == Float.floatToIntBits(b); }
+	private static boolean same(final double a, final double b) { return Double.doubleToLongBits(a) == Double.doubleToLongBits(b); }
+
+	private static int hash(@Nullable final Object value) {
+		if (value instanceof Object[]) return Arrays.deepHashCode((Object[]) value);
+		if (value instanceof boolean[]) return Arrays.hashCode((boolean[]) value);
+		if (value instanceof byte[]) return Arrays.hashCode((byte[]) value);
+		if (value instanceof char[]) return Arrays.hashCode((char[]) value);
+		if (value instanceof short[]) return Arrays.hashCode((short[]) value);
+		if (value instanceof int[]) return Arrays.hashCode((int[]) value);
+		if (value instanceof long[]) return Arrays.hashCode((long[]) value);
+		if (value instanceof float[]) return Arrays.hashCode((float[]) value);
+		if (value instanceof double[]) return Arrays.hashCode((double[]) value);
+		return Objects.hashCode(value);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int order(@Nullable final Object a, @Nullable final Object b) {
+		if (a == b) return 0;
+		if (a == null) return -1;
+		if (b == null) return 1;
+		return ((Comparable) a).compareTo(b);
+	}
+
+
+	/** One handle per compared field, each reading the field itself. */
+	private static final class Plan {
+
+		/** Typed {@code (Object, Object)boolean}. */
+		@NotNull private final MethodHandle[] equals;
+		/** Typed {@code (Object)int}. */
+		@NotNull private final MethodHandle[] hashCodes;
+		/** Typed {@code (Object, Object)int}, only for the fields that can be ordered. */
+		@NotNull private final MethodHandle[] compares;
+
+		@NotNull private final Comparator<Object> comparator;
+
+		@SneakyThrows({NoSuchMethodException.class, IllegalAccessException.class})
+		private Plan(@NotNull final FieldPlan plan) {
+			final List<MethodHandle> equals = new ArrayList<>(), hashCodes = new ArrayList<>(), compares = new ArrayList<>();
+			for (int i = 0; i < plan.fields.length; i++) {
+				if (Modifiers.Is.Transient(plan.fields[i])) continue;
+
+				final Class<?> type = plan.types[i];
+				if (type.isPrimitive()) {
+					final Class<?> wrapper = MethodType.methodType(type).wrap().returnType();
+					final MethodHandle getter = plan.getters[i];
+					equals.add(both(lookup.findStatic(Equality.class, "same", MethodType.methodType(boolean.class, type, type)), getter));
+					hashCodes.add(MethodHandles.filterReturnValue(getter, lookup.findStatic(wrapper, "hashCode", MethodType.methodType(int.class, type))));
+					compares.add(both(lookup.findStatic(wrapper, "compare", MethodType.methodType(int.class, type, type)), getter));
+				} else {
+					final MethodHandle getter = plan.boxedGetters[i];
+					equals.add(both(lookup.findStatic(Objects.class, "deepEquals", MethodType.methodType(boolean.class, Object.class, Object.class)), getter));
+					hashCodes.add(MethodHandles.filterReturnValue(getter, lookup.findStatic(Equality.class, "hash", MethodType.methodType(int.class, Object.class))));
+					if (Comparable.class.isAssignableFrom(type)) {
+						compares.add(both(lookup.findStatic(Equality.class, "order", MethodType.methodType(int.class, Object.class, Object.class)), getter));
+					}
+				}
+			}
+			this.equals = equals.toArray(new MethodHandle[0]);
+			this.hashCodes = hashCodes.toArray(new MethodHandle[0]);
+			this.compares = compares.toArray(new MethodHandle[0]);
+			this.comparator = this::compare;
+		}
+
+		/** Apply the getter to both arguments of the comparison. */
+		@NotNull
+		private static MethodHandle both(@NotNull final MethodHandle comparison, @NotNull final MethodHandle getter) {
+			return MethodHandles.filterArguments(comparison, 0, getter, getter);
+		}
+
+		@SneakyThrows
+		private int compare(@NotNull final Object a, @NotNull final Object b) {
+			for (final MethodHandle compare : compares) {
+				final int order = (int) compare.invokeExact(a, b);
+				if (order != 0) return order;
+			}
+			return 0;
+		}
+
+	}
+
+}
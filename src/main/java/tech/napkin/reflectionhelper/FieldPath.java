@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dotted path of fields, such as {@code "customer.address.zip"}, compiled into
+ * a single {@link MethodHandle}. Each field is resolved once, by the declared type
+ * of the field before it, so reading the path is one handle invocation instead of
+ * a lookup per step.
+ * <p>
+ * If any object along the path is {@code null}, the read stops there and the
+ * default value of the last field's type is returned: {@code null}, {@code 0} or
+ * {@code false}. Primitive values can be read without boxing through the
+ * {@code get<Type>} methods, or through {@link #handle()} directly.
+ * <p>
+ * Paths are cached per root class and path, and are thread safe.
+ *
+ * @noinspection unused
+ */
+public final class FieldPath {
+
+	private static final ClassValue<ConcurrentHashMap<String, FieldPath>> paths = new ClassValue<ConcurrentHashMap<String, FieldPath>>() {
+		@Override
+		protected ConcurrentHashMap<String, FieldPath> computeValue(final Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	@NotNull private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	@NotNull private static final MethodHandle nonNull;
+
+	static {
+		try {
+			nonNull = lookup.findStatic(Objects.class, "nonNull", MethodType.methodType(boolean.class, Object.class));
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** The class the path starts from. */
+	@NotNull public final Class<?> root;
+
+	/** The path, as given. */
+	@NotNull public final String path;
+
+	/** The declared type of the last field of the path. */
+	@NotNull public final Class<?> type;
+
+	/** Typed {@code (<root>)<type>}. */
+	@NotNull private final MethodHandle handle;
+
+	/** Typed {@code (Object)<type>}. */
+	@NotNull private final MethodHandle exact;
+
+	/** Typed {@code (Object)Object}. */
+	@NotNull private final MethodHandle boxed;
+
+	private FieldPath(@NotNull final Class<?> root, @NotNull final String path) throws NoSuchFieldException, IllegalAccessException {
+		this.root = root;
+		this.path = path;
+
+		MethodHandle handle = null;
+		Class<?> owner = root;
+		for (final String name : path.split("\\.", -1)) {
+			if (owner.isPrimitive() || owner.isArray()) throw new NoSuchFieldException(owner.getName() + '.' + name + " in " + path);
+
+			final Field field = resolve(owner, name);
+			final MethodHandle getter = lookup.unreflectGetter(_Permission.ensureAccessible(ReflectionConfig.recordField(field, false)))
+				.asType(MethodType.methodType(field.getType(), owner));
+			final MethodHandle guarded = MethodHandles.guardWithTest(
+				nonNull.asType(MethodType.methodType(boolean.class, owner)),
+				getter,
+				MethodHandles.dropArguments(MethodHandles.zero(field.getType()), 0, owner));
+
+			handle = handle == null ? guarded : MethodHandles.filterReturnValue(handle, guarded);
+			owner = field.getType();
+		}
+
+		this.type = owner;
+		this.handle = handle;
+		this.exact = handle.asType(MethodType.methodType(type, Object.class));
+		this.boxed = handle.asType(MethodType.methodType(Object.class, Object.class));
+	}
+
+	/**
+	 * Get the compiled path from a root class.
+	 *
+	 * @param root the class the path starts from
+	 * @param path field names, separated by dots
+	 * @return the cached path
+	 * @throws NoSuchFieldException (sneaky) if a field of the path is not an instance
+	 * field of the declared type before it, or of one of its superclasses
+	 */
+	@NotNull
+	@SneakyThrows({NoSuchFieldException.class, IllegalAccessException.class})
+	public static FieldPath of(@NotNull final Class<?> root, @NotNull final String path) {
+		final ConcurrentHashMap<String, FieldPath> byPath = paths.get(root);
+		FieldPath compiled = byPath.get(path);
+		if (compiled == null) {
+			compiled = new FieldPath(root, path);
+			final FieldPath raced = byPath.putIfAbsent(path, compiled);
+			if (raced != null) compiled = raced;
+		}
+		return compiled;
+	}
+
+	/** Read a path once, compiling and caching it on first use. */
+	@Nullable
+	public static <T> T get(@Nullable final Object instance, @NotNull final Class<?> root, @NotNull final String path) {
+		return of(root, path).get(instance);
+	}
+
+	/** The instance field declared by a class or its closest superclass, found without throwing on every miss. */
+	@NotNull
+	private static Field resolve(@NotNull final Class<?> owner, @NotNull final String name) throws NoSuchFieldException {
+		for (Class<?> clazz = owner; clazz != null; clazz = clazz.getSuperclass()) {
+			if (DeclaredMembers.of(clazz).hasField(name)) {
+				final Field field = clazz.getDeclaredField(name);
+				if (!Modifier.isStatic(field.getModifiers())) return field;
+			}
+		}
+		throw new NoSuchFieldException(owner.getName() + '.' + name);
+	}
+
+
+	/**
+	 * The compiled path, typed {@code (<root>)<type>}, for composing into other
+	 * handles or calling with {@link MethodHandle#invokeExact(Object...)}.
+	 */
+	@NotNull
+	public MethodHandle handle() {
+		return handle;
+	}
+
+	/** Read the path, boxing a primitive value. */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	@SneakyThrows
+	public <T> T get(@Nullable final Object instance) {
+		return (T) (Object) boxed.invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public boolean getBoolean(@Nullable final Object instance) {
+		return (boolean) exact(boolean.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public byte getByte(@Nullable final Object instance) {
+		return (byte) exact(byte.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public char getChar(@Nullable final Object instance) {
+		return (char) exact(char.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public short getShort(@Nullable final Object instance) {
+		return (short) exact(short.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public int getInt(@Nullable final Object instance) {
+		return (int) exact(int.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public long getLong(@Nullable final Object instance) {
+		return (long) exact(long.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public float getFloat(@Nullable final Object instance) {
+		return (float) exact(float.class).invokeExact(instance);
+	}
+
+	@SneakyThrows
+	public double getDouble(@Nullable final Object instance) {
+		return (double) exact(double.class).invokeExact(instance);
+	}
+
+	@NotNull
+	private MethodHandle exact(@NotNull final Class<?> expected) {
+		if (type != expected) throw new ClassCastException(root.getName() + '.' + path + " is of type " + type.getName() + ", not " + expected.getName());
+		return exact;
+	}
+
+	@Override
+	public String toString() {
+		return root.getName() + '.' + path + " (" + type.getName() + ')';
+	}
+
+}
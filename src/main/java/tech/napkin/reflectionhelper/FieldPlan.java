@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A cached, per-class plan of every instance field of a class (superclass fields
+ * first), along with {@link MethodHandle}s to read and write them. Resolving the
+ * fields, fixing up their permissions and unreflecting the handles is done once
+ * per class, so everything built on top of a plan only pays for the handle
+ * invocations.
+ * <p>
+ * Two sets of handles are kept: {@link #getters}/{@link #setters} are typed
+ * exactly as the field ({@code (Object)int} for an {@code int} field), so that
+ * primitives can be read and written without boxing through
+ * {@link MethodHandle#invokeExact(Object...)}, while
+ * {@link #boxedGetters}/{@link #boxedSetters} are erased to {@code Object}.
+ */
+final class FieldPlan {
+
+	private static final ClassValue<FieldPlan> plans = new ClassValue<FieldPlan>() {
+		@Override
+		protected FieldPlan computeValue(final Class<?> type) {
+			return new FieldPlan(type);
+		}
+	};
+
+	@NotNull private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	@NotNull final Class<?> type;
+	@NotNull final Field[] fields;
+	@NotNull final String[] names;
+	@NotNull final Class<?>[] types;
+	/** Whether a field is shadowed by a field of the same name in a subclass. */
+	@NotNull final boolean[] shadowed;
+
+	/** Getters typed {@code (Object)<field type>}. */
+	@NotNull final MethodHandle[] getters;
+	/** Setters typed {@code (Object, <field type>)void}, {@code null} where the field cannot be written. */
+	@NotNull final MethodHandle[] setters;
+	/** Getters typed {@code (Object)Object}. */
+	@NotNull final MethodHandle[] boxedGetters;
+	/** Setters typed {@code (Object, Object)void}, {@code null} where the field cannot be written. */
+	@NotNull final MethodHandle[] boxedSetters;
+
+	/** The no-args constructor typed {@code ()Object}, or {@code null} if there is none. */
+	@Nullable private final MethodHandle constructor;
+
+	@NotNull
+	static FieldPlan of(@NotNull final Class<?> clazz) {
+		return plans.get(clazz);
+	}
+
+	private FieldPlan(@NotNull final Class<?> type) {
+		this.type = type;
+		this.fields = instanceFields(type);
+
+		final int length = fields.length;
+		names = new String[length];
+		types = new Class<?>[length];
+		getters = new MethodHandle[length];
+		setters = new MethodHandle[length];
+		boxedGetters = new MethodHandle[length];
+		boxedSetters = new MethodHandle[length];
+
+		for (int i = 0; i < length; i++) {
+			final Field field = _Permission.ensureAccessible(fields[i]);
+			names[i] = field.getName();
+			types[i] = field.getType();
+			getters[i] = getter(field);
+			boxedGetters[i] = getters[i].asType(MethodType.methodType(Object.class, Object.class));
+			setters[i] = setter(field);
+			ReflectionConfig.recordField(field, setters[i] != null);
+			if (setters[i] != null) {
+				boxedSetters[i] = setters[i].asType(MethodType.methodType(void.class, Object.class, Object.class));
+			}
+		}
+
+		shadowed = new boolean[length];
+		for (int i = 0; i < length; i++) {
+			shadowed[i] = indexOf(names[i]) != i;
+		}
+
+		constructor = constructor(type);
+	}
+
+	/** @return the index of the last field with the given name, as it shadows the others, or -1 */
+	int indexOf(@NotNull final String name) {
+		for (int i = fields.length - 1; i >= 0; i--) {
+			if (names[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Create a new instance of the planned class with its no-args constructor.
+	 *
+	 * @return a new instance of the planned class
+	 * @throws NoSuchMethodException if the class has no no-args constructor
+	 */
+	@NotNull
+	@SneakyThrows
+	Object instantiate() {
+		if (constructor == null) {
+			throw new NoSuchMethodException(type.getName() + ".<init>()");
+		}
+		return constructor.invoke();
+	}
+
+	@NotNull
+	private static Field[] instanceFields(@NotNull final Class<?> type) {
+		final List<Class<?>> hierarchy = new ArrayList<>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			hierarchy.add(0, c);
+		}
+
+		final List<Field> fields = new ArrayList<>();
+		for (final Class<?> c : hierarchy) {
+			Arrays.stream(c.getDeclaredFields()).filter(Modifiers.Not::Static).forEach(fields::add);
+		}
+		return fields.toArray(new Field[0]);
+	}
+
+	@NotNull
+	@SneakyThrows(IllegalAccessException.class)
+	private static MethodHandle getter(@NotNull final Field field) {
+		return lookup.unreflectGetter(field).asType(MethodType.methodType(field.getType(), Object.class));
+	}
+
+	@Nullable
+	private static MethodHandle setter(@NotNull final Field field) {
+		try {
+			return lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, field.getType()));
+		} catch (final IllegalAccessException e) {
+			// final fields of records and hidden classes can never be written
+			return null;
+		}
+	}
+
+	@Nullable
+	@SneakyThrows(IllegalAccessException.class)
+	private static MethodHandle constructor(@NotNull final Class<?> type) {
+		if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())) {
+			return null;
+		}
+		try {
+			return lookup.unreflectConstructor(_Permission.ensureAccessible(ReflectionConfig.recordMethod(type.getDeclaredConstructor())))
+				.asType(MethodType.methodType(Object.class));
+		} catch (final NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
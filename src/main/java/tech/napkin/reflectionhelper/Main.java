@@ -27,8 +27,132 @@
 
 package tech.napkin.reflectionhelper;
 
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small diagnostic tool, so object sizes can be checked without attaching a
+ * profiler:
+ *
+ * <pre>java -jar ReflectionHelper.jar &lt;class&gt; [classpath] [--bench]</pre>
+ *
+ * prints the field layout, header, padding and instance size of the class as
+ * {@link Memory#layout(Class)} sees it on this JVM. The layout is printed without
+ * initializing the class. With {@code --bench}, reading each of its fields is
+ * timed through {@link Field#get(Object)}, the {@link MethodHandle} used by
+ * {@link Mapping} and {@link SneakyWrappers.Objects.Get}, on an instance
+ * allocated without a constructor - which does initialize the class, and is not
+ * possible for interfaces and abstract classes.
+ *
+ * @author SirNapkin1334
+ */
 public class Main {
-	public static void main(final String[] args) {
 
+	private static final int WARMUP = 200_000;
+	private static final int ITERATIONS = 2_000_000;
+
+	public static void main(final String[] args) throws Throwable {
+		String className = null, classPath = null;
+		boolean bench = false;
+		for (final String arg : args) {
+			if (arg.equals("--bench")) bench = true;
+			else if (className == null) className = arg;
+			else if (classPath == null) classPath = arg;
+			else usage();
+		}
+		if (className == null) usage();
+
+		final Class<?> type = Class.forName(className, false, loader(classPath));
+		print(Memory.layout(type));
+		if (bench) bench(type);
+	}
+
+	private static void usage() {
+		System.err.println("Usage: java -jar ReflectionHelper.jar <class> [classpath] [--bench]");
+		System.exit(1);
+	}
+
+	private static ClassLoader loader(final String classPath) throws MalformedURLException {
+		if (classPath == null) return ClassLoader.getSystemClassLoader();
+		final List<URL> urls = new ArrayList<>();
+		for (final String entry : classPath.split(File.pathSeparator)) {
+			if (!entry.isEmpty()) urls.add(new File(entry).toURI().toURL());
+		}
+		return new URLClassLoader(urls.toArray(new URL[0]), Main.class.getClassLoader());
+	}
+
+	private static void print(final Memory.Layout layout) {
+		System.out.printf("%s (%s-bit, %d-byte references)%n", layout.type.getName(), Memory.is64Bit ? "64" : "32", Memory.referenceSize);
+		System.out.printf("%8s %6s  %-24s %s%n", "OFFSET", "SIZE", "TYPE", "FIELD");
+		System.out.printf("%8d %6d  %s%n", 0, layout.header / 8, "(object header)");
+
+		long end = layout.header;
+		for (final Memory.Slot slot : layout.slots) {
+			if (slot.offset > end) System.out.printf("%8d %6d  %s%n", end / 8, (slot.offset - end) / 8, "(alignment gap)");
+			System.out.printf("%8d %6d  %-24s %s.%s%n", slot.offset / 8, slot.size / 8, slot.field.getType().getSimpleName(),
+				slot.field.getDeclaringClass().getSimpleName(), slot.field.getName());
+			end = slot.offset + slot.size;
+		}
+		if (layout.size > end) System.out.printf("%8d %6d  %s%n", end / 8, (layout.size - end) / 8, "(padding)");
+
+		System.out.printf("Instance size: %d bytes, %d bytes lost to alignment%n", layout.size / 8, layout.getPadding() / 8);
 	}
+
+	private static void bench(final Class<?> type) throws Throwable {
+		if (type.isInterface() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())) {
+			System.out.println("\n" + type.getName() + " can't be instantiated, so there is nothing to benchmark.");
+			return;
+		}
+		final FieldPlan plan = FieldPlan.of(type);
+		if (plan.fields.length == 0) {
+			System.out.println("No instance fields to benchmark.");
+			return;
+		}
+		final Object instance = Construction.allocate(type);
+
+		System.out.printf("%n%-24s %12s %12s %12s%n", "FIELD", "Field.get", "MethodHandle", "Sneaky");
+		for (int i = 0; i < plan.fields.length; i++) {
+			final Field field = _Permission.ensureAccessible(plan.fields[i]);
+			final MethodHandle getter = plan.boxedGetters[i];
+			final Class<?> owner = field.getDeclaringClass();
+			final String name = field.getName();
+
+			final double reflective = time(() -> field.get(instance));
+			final double handle = time(() -> (Object) getter.invokeExact(instance));
+			final double sneaky = time(() -> SneakyWrappers.Objects.Get.ByClass.field(owner, name, 1, instance));
+			System.out.printf("%-24s %9.2f ns %9.2f ns %9.2f ns%n", name, reflective, handle, sneaky);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Read {
+		Object read() throws Throwable;
+	}
+
+	/**
+	 * Nanoseconds per read, after a warm-up run. The values are folded into a sink so
+	 * that the reads can't be eliminated; the instance is allocated without running a
+	 * constructor, so they are either boxed primitives, whose hash is cheap, or null.
+	 */
+	private static double time(final Read read) throws Throwable {
+		int sink = 0;
+		for (int i = 0; i < WARMUP; i++) sink ^= hash(read.read());
+		final long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) sink ^= hash(read.read());
+		final long elapsed = System.nanoTime() - start;
+		if (sink == 42) System.out.print("");
+		return (double) elapsed / ITERATIONS;
+	}
+
+	private static int hash(final Object value) {
+		return value == null ? 0 : value.hashCode();
+	}
+
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Conversion of objects to and from {@code Map<String, Object>}s, keyed by field
+ * name.
+ * <p>
+ * Every class is only reflected upon once: its fields are compiled into a cached
+ * plan of method handles the first time it is mapped, after which converting an
+ * object is a loop over the plan with no lookups. All instance fields, including
+ * those of superclasses, are mapped; when a subclass shadows a field of a
+ * superclass, the subclass's field wins.
+ * <p>
+ * The batch methods additionally keep the plan of the previous element around,
+ * so lists of objects of the same class don't even pay for the cache lookup, and
+ * can reuse previously returned maps.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Mapping {
+
+	/**
+	 * Convert an object to a map of its field names to their values.
+	 *
+	 * @param object the object to be converted
+	 * @return a new map holding the values of all of the object's fields
+	 */
+	@NotNull
+	public static Map<String, Object> toMap(@NotNull final Object object) {
+		final FieldPlan plan = FieldPlan.of(object.getClass());
+		return toMap(plan, object, new HashMap<>(capacity(plan)));
+	}
+
+	/**
+	 * Put the values of all of an object's fields into the provided map, keyed by
+	 * field name. The map is not cleared beforehand.
+	 *
+	 * @param object the object to be converted
+	 * @param into the map to put the values into
+	 * @param <M> the type of the map
+	 * @return the passed map to allow for method chaining
+	 */
+	@NotNull
+	public static <M extends Map<String, Object>> M toMap(@NotNull final Object object, @NotNull final M into) {
+		return toMap(FieldPlan.of(object.getClass()), object, into);
+	}
+
+	/**
+	 * Convert every object of a list to a map of its field names to their values.
+	 *
+	 * @param objects the objects to be converted
+	 * @return a list of new maps, in the same order as the objects
+	 */
+	@NotNull
+	public static List<Map<String, Object>> toMaps(@NotNull final List<?> objects) {
+		final List<Map<String, Object>> maps = new ArrayList<>(objects.size());
+		toMaps(objects, maps);
+		return maps;
+	}
+
+	/**
+	 * Convert every object of a list to a map of its field names to their values,
+	 * reusing the maps already present in {@code into}. The n-th map of
+	 * {@code into} is cleared and refilled with the n-th object; if there are more
+	 * objects than maps, new maps are appended, and if there are fewer, the
+	 * surplus maps are removed.
+	 *
+	 * @param objects the objects to be converted
+	 * @param into the list of maps to be reused and filled
+	 */
+	public static void toMaps(@NotNull final List<?> objects, @NotNull final List<Map<String, Object>> into) {
+		final int size = objects.size();
+		FieldPlan plan = null;
+		for (int i = 0; i < size; i++) {
+			final Object object = objects.get(i);
+			if (plan == null || plan.type != object.getClass()) {
+				plan = FieldPlan.of(object.getClass());
+			}
+
+			if (i < into.size()) {
+				final Map<String, Object> map = into.get(i);
+				map.clear();
+				toMap(plan, object, map);
+			} else {
+				into.add(toMap(plan, object, new HashMap<>(capacity(plan))));
+			}
+		}
+		while (into.size() > size) {
+			into.remove(into.size() - 1);
+		}
+	}
+
+	/**
+	 * Create a new instance of a class with its no-args constructor and set its
+	 * fields from the provided map. Fields without a key in the map are left at
+	 * whatever the constructor set them to, as are primitive fields whose value is
+	 * {@code null}.
+	 *
+	 * @param clazz the class to be instantiated
+	 * @param map a map of field names to their values
+	 * @param <T> the type of the object to be created
+	 * @return a new instance of the class holding the values of the map
+	 * @throws NoSuchMethodException if the class has no no-args constructor
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> T fromMap(@NotNull final Class<T> clazz, @NotNull final Map<String, ?> map) {
+		final FieldPlan plan = FieldPlan.of(clazz);
+		return (T) fromMap(plan, plan.instantiate(), map);
+	}
+
+	/**
+	 * Set the fields of an existing object from the provided map. Fields without a
+	 * key in the map are left untouched, as are primitive fields whose value is
+	 * {@code null}.
+	 *
+	 * @param object the object whose fields are to be set
+	 * @param map a map of field names to their values
+	 * @param <T> the type of the object
+	 * @return the passed object to allow for method chaining
+	 */
+	@NotNull
+	public static <T> T fromMap(@NotNull final T object, @NotNull final Map<String, ?> map) {
+		return fromMap(FieldPlan.of(object.getClass()), object, map);
+	}
+
+	/**
+	 * Create a new instance of a class for every map of a list, as per
+	 * {@link #fromMap(Class, Map)}.
+	 *
+	 * @param clazz the class to be instantiated
+	 * @param maps maps of field names to their values
+	 * @param <T> the type of the objects to be created
+	 * @return a list of new instances, in the same order as the maps
+	 * @throws NoSuchMethodException if the class has no no-args constructor
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> fromMaps(@NotNull final Class<T> clazz, @NotNull final List<? extends Map<String, ?>> maps) {
+		final FieldPlan plan = FieldPlan.of(clazz);
+		final List<T> objects = new ArrayList<>(maps.size());
+		for (final Map<String, ?> map : maps) {
+			objects.add((T) fromMap(plan, plan.instantiate(), map));
+		}
+		return objects;
+	}
+
+
+	@NotNull
+	@SneakyThrows
+	private static <M extends Map<String, Object>> M toMap(@NotNull final FieldPlan plan, @NotNull final Object object, @NotNull final M into) {
+		final String[] names = plan.names;
+		final MethodHandle[] getters = plan.boxedGetters;
+		for (int i = 0; i < names.length; i++) {
+			if (!plan.shadowed[i]) into.put(names[i], getters[i].invokeExact(object));
+		}
+		return into;
+	}
+
+	@NotNull
+	@SneakyThrows
+	private static <T> T fromMap(@NotNull final FieldPlan plan, @NotNull final T object, @NotNull final Map<String, ?> map) {
+		final String[] names = plan.names;
+		for (int i = 0; i < names.length; i++) {
+			if (plan.shadowed[i]) continue;
+			final Object value = map.get(names[i]);
+			if (value == null && (plan.types[i].isPrimitive() || !map.containsKey(names[i]))) continue;
+			if (plan.boxedSetters[i] == null) {
+				throw new IllegalAccessException("Cannot set final field " + plan.fields[i]);
+			}
+			plan.boxedSetters[i].invokeExact((Object) object, value);
+		}
+		return object;
+	}
+
+	/** @return the initial capacity for a {@link HashMap} holding every field of the plan without resizing */
+	private static int capacity(@NotNull final FieldPlan plan) {
+		return (int) (plan.names.length / 0.75f) + 1;
+	}
+
+}
@@ -0,0 +1,524 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * A compact, memory-mapped index of the declared fields and methods of classes,
+ * precomputed at build time by the {@code reflectionIndex} Gradle task, which
+ * runs {@link #main(String[])} over the chosen packages.
+ * <p>
+ * The index is built from the class files themselves, so neither building nor
+ * querying it loads any class. {@link SneakyWrappers.Reflect} consults the
+ * {@link #global()} index before doing any live reflection: lookups of members an
+ * indexed class does not declare fail without loading the class or its
+ * reflection data, and member names can be listed without reflecting at all.
+ * <p>
+ * Classes may change after the index was built, so every class record carries a
+ * checksum of its class file. The negative lookups are only trusted for a class
+ * once the checksum of the class file visible at runtime has been found to match
+ * (see {@link #isCurrent(String)}); otherwise live reflection decides.
+ * <p>
+ * The global index is mapped from the file named by the {@value #PROPERTY}
+ * system property, or, failing that, read from the {@value #RESOURCE} resource.
+ * An index that can't be loaded is reported on {@link System#err}, and the library
+ * runs without one.
+ *
+ * @noinspection unused
+ */
+public final class MemberIndex {
+
+	/** The system property naming the index file to be mapped as the global index. */
+	public static final String PROPERTY = "tech.napkin.reflectionhelper.index";
+
+	/** The resource the global index is read from when {@value #PROPERTY} is not set. */
+	public static final String RESOURCE = "META-INF/reflectionhelper/members.idx";
+
+	/*
+	 * The format, all big endian:
+	 *   header:  magic, version, class count, member count, string area offset
+	 *   classes: name, first member, member count, CRC-32 of the class file (0 if unknown)
+	 *            - sorted by the bytes of the name
+	 *   members: name, descriptor, access flags | FIELD
+	 *   strings: u2 length, UTF-8 bytes - names are offsets relative to the string area
+	 */
+	private static final int MAGIC = 0x52484958, VERSION = 2;
+	private static final int HEADER_SIZE = 20, CLASS_SIZE = 16, MEMBER_SIZE = 12;
+	private static final int FIELD = 0x10000;
+
+	@Nullable private static final MemberIndex global = loadGlobal();
+
+	@NotNull private final ByteBuffer buffer;
+	private final int classCount;
+	private final int memberBase;
+	private final int stringBase;
+
+	/** Whether the class files at runtime match the index, by class name, as the library's class loader sees them. */
+	@NotNull private final Map<String, Boolean> current = new ConcurrentHashMap<>();
+
+	/** Whether the class files match the index, as the loader of each class sees it. */
+	@NotNull private final ClassValue<Boolean> currentClasses = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(final Class<?> type) {
+			final int record = find(type.getName());
+			if (record < 0) return false;
+			final int indexed = buffer.getInt(record + 12);
+			return indexed != 0 && checksum(type.getClassLoader(), type.getName()) == indexed;
+		}
+	};
+
+
+	/** A field or method, as written in a class file. */
+	public static final class Member {
+
+		@NotNull public final String name;
+		/** The JVM descriptor, such as {@code I} or {@code (Ljava/lang/String;)V}. */
+		@NotNull public final String descriptor;
+		/** The access flags of the member, as per {@link Modifier}. */
+		public final int access;
+		public final boolean field;
+
+		Member(@NotNull final String name, @NotNull final String descriptor, final int access, final boolean field) {
+			this.name = name;
+			this.descriptor = descriptor;
+			this.access = access;
+			this.field = field;
+		}
+
+		@Override
+		public String toString() {
+			return name + (field ? ":" : "") + descriptor;
+		}
+
+	}
+
+
+	private MemberIndex(@NotNull final ByteBuffer buffer) {
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Not a member index of version " + VERSION);
+		}
+		this.buffer = buffer;
+		this.classCount = buffer.getInt(8);
+		this.memberBase = HEADER_SIZE + classCount * CLASS_SIZE;
+		this.stringBase = buffer.getInt(16);
+	}
+
+	/**
+	 * The index loaded from the {@value #PROPERTY} file or the {@value #RESOURCE}
+	 * resource at startup.
+	 *
+	 * @return the global index, or {@code null} if there is none
+	 */
+	@Nullable
+	public static MemberIndex global() {
+		return global;
+	}
+
+	/**
+	 * Memory-map an index file.
+	 *
+	 * @param file an index written by {@link #main(String[])}
+	 * @return the mapped index
+	 * @throws IOException if the file cannot be mapped
+	 * @throws IllegalArgumentException if the file is not an index
+	 */
+	@NotNull
+	@SneakyThrows(IOException.class)
+	public static MemberIndex load(@NotNull final Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new MemberIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	@Nullable
+	private static MemberIndex loadGlobal() {
+		final String file = System.getProperty(PROPERTY);
+		try {
+			if (file != null) {
+				return load(Paths.get(file));
+			}
+			try (InputStream in = resource(RESOURCE)) {
+				return in == null ? null : new MemberIndex(ByteBuffer.wrap(in.readAllBytes()));
+			}
+		} catch (final IOException | IllegalArgumentException e) {
+			System.err.println("Cannot load the member index " + (file != null ? file : RESOURCE) + ", running without it: " + e);
+			return null;
+		}
+	}
+
+	@Nullable
+	private static InputStream resource(@NotNull final String name) {
+		return resource(MemberIndex.class.getClassLoader(), name);
+	}
+
+	@Nullable
+	private static InputStream resource(@Nullable final ClassLoader loader, @NotNull final String name) {
+		return loader == null ? ClassLoader.getSystemResourceAsStream(name) : loader.getResourceAsStream(name);
+	}
+
+	/**
+	 * The CRC-32 of a class file, as found through a class loader.
+	 *
+	 * @param loader the loader to look in, {@code null} for the bootstrap loader
+	 * @return the checksum, or 0 if the class file can't be found or read
+	 */
+	private static int checksum(@Nullable final ClassLoader loader, @NotNull final String className) {
+		try (InputStream in = resource(loader, className.replace('.', '/') + ".class")) {
+			if (in == null) return 0;
+			final CRC32 crc = new CRC32();
+			crc.update(in.readAllBytes());
+			return (int) crc.getValue();
+		} catch (final IOException e) {
+			return 0;
+		}
+	}
+
+
+	/**
+	 * @param className the binary name of a class
+	 * @return whether the class is in this index
+	 */
+	public boolean indexes(@NotNull final String className) {
+		return find(className) >= 0;
+	}
+
+	/**
+	 * Whether the indexed members of a class can be trusted: the class is in this
+	 * index, and its class file as the library sees it is the one that was indexed.
+	 * The class file is checked once per class.
+	 *
+	 * @param className the binary name of a class
+	 * @return whether the class is indexed and up to date
+	 */
+	public boolean isCurrent(@NotNull final String className) {
+		final int record = find(className);
+		if (record < 0) return false;
+		final int indexed = buffer.getInt(record + 12);
+		return indexed != 0 && current.computeIfAbsent(className, name -> checksum(MemberIndex.class.getClassLoader(), name) == indexed);
+	}
+
+	/**
+	 * Whether the indexed members of a class can be trusted, like
+	 * {@link #isCurrent(String)} but with the class file as the class's own loader
+	 * sees it, so that a class of the same name from another loader, say a different
+	 * version in a plugin, is not judged by the indexed one.
+	 *
+	 * @param clazz any class
+	 * @return whether the class is indexed and up to date
+	 */
+	public boolean isCurrent(@NotNull final Class<?> clazz) {
+		return currentClasses.get(clazz);
+	}
+
+	/**
+	 * @param className the binary name of a class
+	 * @return the members of the class, or {@code null} if the class is not in this index
+	 */
+	@Nullable
+	public List<Member> members(@NotNull final String className) {
+		final int record = find(className);
+		if (record < 0) return null;
+
+		final int first = buffer.getInt(record + 4), count = buffer.getInt(record + 8);
+		final List<Member> members = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final int member = memberBase + (first + i) * MEMBER_SIZE;
+			final int flags = buffer.getInt(member + 8);
+			members.add(new Member(string(buffer.getInt(member)), string(buffer.getInt(member + 4)), flags & 0xFFFF, (flags & FIELD) != 0));
+		}
+		return Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * @param className the binary name of a class
+	 * @param name the name of a field
+	 * @return whether the class declares the field, {@code false} if the class is not in this index
+	 */
+	public boolean declaresField(@NotNull final String className, @NotNull final String name) {
+		return declares(find(className), name, null, true);
+	}
+
+	/**
+	 * @param className the binary name of a class
+	 * @param name the name of a method, {@code <init>} for constructors
+	 * @param parameterTypes the parameter types of the method
+	 * @return whether the class declares the method, {@code false} if the class is not in this index
+	 */
+	public boolean declaresMethod(@NotNull final String className, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+		final String descriptor = MethodType.methodType(void.class, parameterTypes).toMethodDescriptorString();
+		return declares(find(className), name, descriptor.substring(0, descriptor.length() - 1), false);
+	}
+
+	/**
+	 * @param className the binary name of a class
+	 * @param fields whether to list fields or methods
+	 * @return the names of the fields or methods, or {@code null} if the class is not
+	 *         in this index or is not {@linkplain #isCurrent(String) current}
+	 */
+	@Nullable
+	String[] names(@NotNull final String className, final boolean fields) {
+		if (!isCurrent(className)) return null;
+		final List<Member> members = members(className);
+		return members == null ? null : members.stream()
+			.filter(member -> member.field == fields && !(member.name.equals("<init>") || member.name.equals("<clinit>")))
+			.map(member -> member.name)
+			.toArray(String[]::new);
+	}
+
+	/**
+	 * Fail a lookup of a member that the global index knows is not declared, without
+	 * loading the class. The class is looked up by name through the library's own
+	 * class loader.
+	 *
+	 * @throws NoSuchFieldException if the class is indexed, current and does not declare the field
+	 */
+	static void checkField(@NotNull final String className, @NotNull final String name) throws NoSuchFieldException {
+		if (global != null && global.isCurrent(className) && !global.declaresField(className, name)) {
+			throw new NoSuchFieldException(name);
+		}
+	}
+
+	/**
+	 * Fail a lookup of a field that the global index knows is not declared by an
+	 * already loaded class.
+	 *
+	 * @throws NoSuchFieldException if the class is indexed, current and does not declare the field
+	 */
+	static void checkField(@NotNull final Class<?> clazz, @NotNull final String name) throws NoSuchFieldException {
+		if (global != null && global.isCurrent(clazz) && !global.declaresField(clazz.getName(), name)) {
+			throw new NoSuchFieldException(name);
+		}
+	}
+
+	/**
+	 * Fail a lookup of a method that the global index knows is not declared, without
+	 * loading the class. The class is looked up by name through the library's own
+	 * class loader.
+	 *
+	 * @throws NoSuchMethodException if the class is indexed, current and does not declare the method
+	 */
+	static void checkMethod(@NotNull final String className, @NotNull final String name, @NotNull final Class<?>... parameterTypes) throws NoSuchMethodException {
+		if (global != null && global.isCurrent(className) && !global.declaresMethod(className, name, parameterTypes)) {
+			throw new NoSuchMethodException(className + '.' + name + Arrays.toString(parameterTypes));
+		}
+	}
+
+	/**
+	 * Fail a lookup of a method that the global index knows is not declared by an
+	 * already loaded class.
+	 *
+	 * @throws NoSuchMethodException if the class is indexed, current and does not declare the method
+	 */
+	static void checkMethod(@NotNull final Class<?> clazz, @NotNull final String name, @NotNull final Class<?>... parameterTypes) throws NoSuchMethodException {
+		if (global != null && global.isCurrent(clazz) && !global.declaresMethod(clazz.getName(), name, parameterTypes)) {
+			throw new NoSuchMethodException(clazz.getName() + '.' + name + Arrays.toString(parameterTypes));
+		}
+	}
+
+
+	/** @return the offset of the record of the class, or -1 */
+	private int find(@NotNull final String className) {
+		final byte[] key = className.getBytes(StandardCharsets.UTF_8);
+		int low = 0, high = classCount - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int record = HEADER_SIZE + middle * CLASS_SIZE;
+			final int comparison = compare(buffer.getInt(record), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return record;
+			}
+		}
+		return -1;
+	}
+
+	private boolean declares(final int record, @NotNull final String name, @Nullable final String descriptorPrefix, final boolean field) {
+		if (record < 0) return false;
+
+		final byte[] key = name.getBytes(StandardCharsets.UTF_8);
+		final byte[] prefix = descriptorPrefix == null ? null : descriptorPrefix.getBytes(StandardCharsets.UTF_8);
+		final int first = buffer.getInt(record + 4), count = buffer.getInt(record + 8);
+		for (int i = 0; i < count; i++) {
+			final int member = memberBase + (first + i) * MEMBER_SIZE;
+			if (((buffer.getInt(member + 8) & FIELD) != 0) == field && compare(buffer.getInt(member), key) == 0
+				&& (prefix == null || startsWith(buffer.getInt(member + 4), prefix))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Compare the string at {@code offset} to {@code key} by their unsigned bytes, without decoding it. */
+	private int compare(final int offset, @NotNull final byte[] key) {
+		final int start = stringBase + offset + 2;
+		final int length = buffer.getShort(stringBase + offset) & 0xFFFF;
+		for (int i = 0; i < Math.min(length, key.length); i++) {
+			final int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+			if (difference != 0) return difference;
+		}
+		return length - key.length;
+	}
+
+	private boolean startsWith(final int offset, @NotNull final byte[] prefix) {
+		final int start = stringBase + offset + 2;
+		if ((buffer.getShort(stringBase + offset) & 0xFFFF) < prefix.length) return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer.get(start + i) != prefix[i]) return false;
+		}
+		return true;
+	}
+
+	@NotNull
+	private String string(final int offset) {
+		final byte[] bytes = new byte[buffer.getShort(stringBase + offset) & 0xFFFF];
+		final ByteBuffer slice = buffer.duplicate();
+		slice.position(stringBase + offset + 2);
+		slice.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * Write an index of the members of the scanned classes.
+	 *
+	 * @param classes classes scanned with their members
+	 * @param file the file to write the index to
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(@NotNull final Collection<Classes.Info> classes, @NotNull final Path file) throws IOException {
+		final List<Classes.Info> sorted = new ArrayList<>(classes);
+		sorted.sort(Comparator.comparing(info -> info.name.getBytes(StandardCharsets.UTF_8), MemberIndex::compareUnsigned));
+
+		final Map<String, Integer> strings = new HashMap<>();
+		final ByteBuffer[] area = {ByteBuffer.allocate(1 << 16)}; // grown by intern
+		final int memberCount = sorted.stream().mapToInt(info -> info.members == null ? 0 : info.members.size()).sum();
+		final ByteBuffer records = ByteBuffer.allocate(HEADER_SIZE + sorted.size() * CLASS_SIZE + memberCount * MEMBER_SIZE);
+
+		records.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(memberCount).putInt(0);
+		int first = 0;
+		for (final Classes.Info info : sorted) {
+			final int count = info.members == null ? 0 : info.members.size();
+			records.putInt(intern(info.name, strings, area)).putInt(first).putInt(count).putInt(checksum(MemberIndex.class.getClassLoader(), info.name));
+			first += count;
+		}
+		for (final Classes.Info info : sorted) {
+			if (info.members == null) continue;
+			for (final Member member : info.members) {
+				records.putInt(intern(member.name, strings, area)).putInt(intern(member.descriptor, strings, area))
+					.putInt(member.access | (member.field ? FIELD : 0));
+			}
+		}
+		records.putInt(16, records.position());
+
+		records.flip();
+		area[0].flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (records.hasRemaining()) channel.write(records);
+			while (area[0].hasRemaining()) channel.write(area[0]);
+		}
+	}
+
+	/** @return the offset of the string in the string area, appending it if it isn't there yet */
+	private static int intern(@NotNull final String string, @NotNull final Map<String, Integer> strings, @NotNull final ByteBuffer[] area) {
+		final Integer known = strings.get(string);
+		if (known != null) return known;
+
+		final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if (area[0].remaining() < bytes.length + 2) {
+			final ByteBuffer grown = ByteBuffer.allocate(Math.max(area[0].capacity() * 2, area[0].position() + bytes.length + 2));
+			area[0].flip();
+			area[0] = grown.put(area[0]);
+		}
+		final int offset = area[0].position();
+		area[0].putShort((short) bytes.length).put(bytes);
+		strings.put(string, offset);
+		return offset;
+	}
+
+	private static int compareUnsigned(@NotNull final byte[] a, @NotNull final byte[] b) {
+		for (int i = 0; i < Math.min(a.length, b.length); i++) {
+			final int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (difference != 0) return difference;
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * Build an index of every class of the given packages (and their subpackages) on
+	 * the class path and module path. Run by the {@code reflectionIndex} task.
+	 *
+	 * @param args the file to write the index to, followed by the packages to index
+	 */
+	@SneakyThrows(IOException.class)
+	public static void main(@NotNull final String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: MemberIndex <output file> <package>...");
+			System.exit(1);
+		}
+
+		final Predicate<Classes.Info> filter = Arrays.stream(args, 1, args.length)
+			.map(Classes.Filter::inPackage)
+			.reduce(info -> false, Predicate::or);
+		final List<Classes.Info> classes = Classes.scan(Classes.classPath(), filter, true);
+
+		final Path file = Paths.get(args[0]);
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		write(classes, file);
+		System.out.println("Indexed " + classes.size() + " classes into " + file);
+	}
+
+}
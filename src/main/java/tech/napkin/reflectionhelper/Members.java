@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * A cache of resolved fields, one copy per permission level, for the field access
+ * methods of {@link SneakyWrappers.Objects}. The cached copies never leave this
+ * package, so their permissions are only ever modified once, when resolved.
+ * <p>
+ * Failed lookups are not cached.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class Members {
+
+	private static final ClassValue<ConcurrentHashMap<String, AtomicReferenceArray<Field>>> fields = new ClassValue<ConcurrentHashMap<String, AtomicReferenceArray<Field>>>() {
+		@Override
+		protected ConcurrentHashMap<String, AtomicReferenceArray<Field>> computeValue(final Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	/**
+	 * Get a declared field of a class with the permission applied, resolving it on
+	 * first use.
+	 *
+	 * @param clazz the declaring class of the field
+	 * @param name the name of the field
+	 * @param permission the permission to be applied, as per {@link _Permission#modifyPermission}
+	 * @return the cached field
+	 * @throws NoSuchFieldException if the class declares no such field
+	 */
+	@NotNull
+	static Field field(@NotNull final Class<?> clazz, @NotNull final String name, @Range(from = -1, to = 2) final int permission) throws NoSuchFieldException {
+		final ConcurrentHashMap<String, AtomicReferenceArray<Field>> byName = fields.get(clazz);
+		AtomicReferenceArray<Field> byPermission = byName.get(name);
+		Field field = byPermission == null ? null : byPermission.get(permission + 1);
+		if (field != null) return field;
+
+		field = _Permission.modifyPermission(clazz.getDeclaredField(name), permission);
+		if (byPermission == null) {
+			byPermission = new AtomicReferenceArray<>(4);
+			final AtomicReferenceArray<Field> raced = byName.putIfAbsent(name, byPermission);
+			if (raced != null) byPermission = raced;
+		}
+		byPermission.set(permission + 1, field);
+		return field;
+	}
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodType.methodType;
+import static lombok.AccessLevel.PRIVATE;
+import static tech.napkin.reflectionhelper.ClassFileWriter.*;
+import static tech.napkin.reflectionhelper.ClassFileWriter.Code.*;
+
+/**
+ * Proxies that call a {@link MethodHandle} per method, for when
+ * {@link java.lang.reflect.Proxy} is too slow: instead of boxing every argument
+ * into an array and going through one {@code InvocationHandler}, each method of
+ * the generated class passes its arguments as they are to the
+ * {@link MethodHandle#invokeExact} of its own handler.
+ * <p>
+ * The proxy classes are spun once per set of interfaces and cached. On Java 15 and
+ * later they are hidden classes, whose handlers are held in final fields the JIT
+ * trusts, so a call through a proxy can be inlined all the way into the handler;
+ * before that they are ordinary classes, see {@link ClassDefiner}.
+ * <p>
+ * Default methods are left as they are, as are the public methods of
+ * {@link Object}, even when an interface redeclares them.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Proxies {
+
+	private static final String HANDLE = "java/lang/invoke/MethodHandle", HANDLE_DESCRIPTOR = "L" + HANDLE + ';';
+
+	/** Factories by the first of their interfaces, then by all of them. */
+	private static final ClassValue<ConcurrentHashMap<List<Class<?>>, Factory>> factories = new ClassValue<ConcurrentHashMap<List<Class<?>>, Factory>>() {
+		@Override
+		protected ConcurrentHashMap<List<Class<?>>, Factory> computeValue(final Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	@NotNull private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/** Ordinary classes need unique names, see {@link ClassDefiner}. */
+	@NotNull private static final AtomicInteger count = new AtomicInteger();
+
+
+	/**
+	 * Get the factory of proxies implementing a set of interfaces, spinning its
+	 * class on first use.
+	 *
+	 * @param interfaces the interfaces, in order; the same interfaces in another
+	 * order make another class
+	 * @return the cached factory
+	 * @throws IllegalArgumentException if a class is not an interface, the
+	 * non-public interfaces are not all in the same package, or their package is
+	 * in another module that is not open to this library
+	 */
+	@NotNull
+	public static Factory factory(@NotNull final Class<?>... interfaces) {
+		if (interfaces.length == 0) throw new IllegalArgumentException("No interfaces to proxy");
+		final List<Class<?>> key = Collections.unmodifiableList(Arrays.asList(interfaces.clone()));
+		final ConcurrentHashMap<List<Class<?>>, Factory> byInterfaces = factories.get(interfaces[0]);
+		Factory factory = byInterfaces.get(key);
+		if (factory == null) {
+			factory = new Factory(key);
+			final Factory raced = byInterfaces.putIfAbsent(key, factory);
+			if (raced != null) factory = raced;
+		}
+		return factory;
+	}
+
+	/**
+	 * Create a proxy of one interface.
+	 *
+	 * @param type the interface to implement
+	 * @param handlers the handler of each method, see {@link Factory#newInstance(Function)}
+	 * @return the new proxy
+	 */
+	@NotNull
+	public static <T> T create(@NotNull final Class<T> type, @NotNull final Function<? super Method, ? extends MethodHandle> handlers) {
+		return type.cast(factory(type).newInstance(handlers));
+	}
+
+
+	/** The generated class implementing one set of interfaces. */
+	public static final class Factory {
+
+		@NotNull private final List<Class<?>> interfaces;
+		@NotNull private final List<Method> methods;
+		/** The type of the handler of each method, which is the method's type without the receiver. */
+		@NotNull private final MethodType[] types;
+		/** Typed {@code (MethodHandle[])Object}. */
+		@NotNull private final MethodHandle constructor;
+
+		@SneakyThrows({NoSuchMethodException.class, IllegalAccessException.class})
+		private Factory(@NotNull final List<Class<?>> interfaces) {
+			this.interfaces = interfaces;
+
+			final Map<String, Method> abstracts = new LinkedHashMap<>();
+			for (final Class<?> type : interfaces) {
+				if (!type.isInterface()) throw new IllegalArgumentException(type.getName() + " is not an interface");
+				for (final Method method : type.getMethods()) {
+					if (Modifier.isAbstract(method.getModifiers()) && !isObjectMethod(method)) {
+						abstracts.putIfAbsent(method.getName() + methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString(), method);
+					}
+				}
+			}
+			methods = Collections.unmodifiableList(new ArrayList<>(abstracts.values()));
+			types = new MethodType[methods.size()];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = methodType(methods.get(i).getReturnType(), methods.get(i).getParameterTypes());
+			}
+
+			final MethodHandles.Lookup host = host(interfaces);
+			final Class<?> proxy = ClassDefiner.define(host, generate(host.lookupClass(), interfaces, methods, types));
+			constructor = host.findConstructor(proxy, methodType(void.class, MethodHandle[].class))
+				.asType(methodType(Object.class, MethodHandle[].class));
+		}
+
+		/** The interfaces implemented by the proxies, in order. */
+		@NotNull
+		public List<Class<?>> interfaces() {
+			return interfaces;
+		}
+
+		/** The methods that need a handler, in the order {@link #newInstance(MethodHandle...)} takes them. */
+		@NotNull
+		public List<Method> methods() {
+			return methods;
+		}
+
+		/**
+		 * Create a proxy from the handler of each of its {@link #methods()}. A handler
+		 * takes the arguments of its method, without the proxy itself, and returns its
+		 * result; it is adapted with {@link MethodHandle#asType} to exactly the type of
+		 * the method.
+		 *
+		 * @param handlers a handler for each method, in order
+		 * @return the new proxy
+		 * @throws IllegalArgumentException if the number of handlers is wrong
+		 * @throws java.lang.invoke.WrongMethodTypeException if a handler can't be adapted
+		 */
+		@NotNull
+		@SneakyThrows
+		public Object newInstance(@NotNull final MethodHandle... handlers) {
+			if (handlers.length != types.length) {
+				throw new IllegalArgumentException("Expected " + types.length + " handlers, got " + handlers.length);
+			}
+			final MethodHandle[] exact = new MethodHandle[handlers.length];
+			for (int i = 0; i < handlers.length; i++) {
+				exact[i] = handlers[i].asType(types[i]);
+			}
+			return (Object) constructor.invokeExact(exact);
+		}
+
+		/**
+		 * @param handlers returns the handler of a method, see {@link #newInstance(MethodHandle...)}
+		 * @return the new proxy
+		 */
+		@NotNull
+		public Object newInstance(@NotNull final Function<? super Method, ? extends MethodHandle> handlers) {
+			final MethodHandle[] resolved = new MethodHandle[methods.size()];
+			for (int i = 0; i < resolved.length; i++) {
+				resolved[i] = handlers.apply(methods.get(i));
+			}
+			return newInstance(resolved);
+		}
+
+	}
+
+
+	private static boolean isObjectMethod(@NotNull final Method method) {
+		try {
+			return Modifier.isPublic(Object.class.getMethod(method.getName(), method.getParameterTypes()).getModifiers());
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * A lookup to define the proxy class with, in the package of the non-public
+	 * interfaces if there are any, or else of the first interface our own lookup
+	 * can open with enough access to define classes, so that the proxy can see
+	 * every interface from its class loader.
+	 */
+	@NotNull
+	private static MethodHandles.Lookup host(@NotNull final List<Class<?>> interfaces) {
+		Class<?> host = null;
+		for (final Class<?> type : interfaces) {
+			if (!Modifier.isPublic(type.getModifiers())) {
+				if (host != null && !host.getPackage().getName().equals(type.getPackage().getName())) {
+					throw new IllegalArgumentException("Non-public interfaces from different packages: " + host.getName() + ", " + type.getName());
+				}
+				host = type;
+			}
+		}
+		if (host != null) return privateLookup(host, true);
+
+		for (final Class<?> type : interfaces) {
+			final MethodHandles.Lookup opened = privateLookup(type, false);
+			if (opened != null && ClassDefiner.canDefine(opened)) return opened;
+		}
+		return lookup;
+	}
+
+	@SneakyThrows(IllegalAccessException.class)
+	private static MethodHandles.Lookup privateLookup(@NotNull final Class<?> type, final boolean required) {
+		try {
+			return MethodHandles.privateLookupIn(type, lookup);
+		} catch (final IllegalAccessException e) {
+			if (required) throw e;
+			return null;
+		}
+	}
+
+	/**
+	 * The class file of a proxy: a {@code MethodHandle} field per method, set from
+	 * the array its constructor takes, and each method passing its arguments to the
+	 * {@code invokeExact} of its field.
+	 */
+	@NotNull
+	private static byte[] generate(@NotNull final Class<?> host, @NotNull final List<Class<?>> interfaces, @NotNull final List<Method> methods, @NotNull final MethodType[] types) {
+		final String name = host.getName().replace('.', '/') + "$$Proxy" + count.getAndIncrement();
+		final String[] names = new String[interfaces.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = interfaces.get(i).getName().replace('.', '/');
+		}
+		final ClassFileWriter writer = new ClassFileWriter(ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, "java/lang/Object", names);
+
+		final Code constructor = new Code(3, 2)
+			.op(ALOAD, 0)
+			.op2(INVOKESPECIAL, writer.methodRef("java/lang/Object", "<init>", "()V"));
+		for (int i = 0; i < types.length; i++) {
+			writer.field(ACC_PRIVATE | ACC_FINAL, "h" + i, HANDLE_DESCRIPTOR);
+			constructor.op(ALOAD, 0).op(ALOAD, 1).push(writer, i).op(AALOAD)
+				.op2(PUTFIELD, writer.fieldRef(name, "h" + i, HANDLE_DESCRIPTOR));
+		}
+		writer.method(ACC_PUBLIC, "<init>", "([" + HANDLE_DESCRIPTOR + ")V", constructor.op(RETURN));
+
+		for (int i = 0; i < types.length; i++) {
+			final MethodType type = types[i];
+			int slots = 1;
+			for (final Class<?> parameter : type.parameterArray()) {
+				slots += parameter == long.class || parameter == double.class ? 2 : 1;
+			}
+			final int returned = type.returnType() == long.class || type.returnType() == double.class ? 2 : 1;
+
+			final Code code = new Code(Math.max(slots, returned), slots)
+				.op(ALOAD, 0)
+				.op2(GETFIELD, writer.fieldRef(name, "h" + i, HANDLE_DESCRIPTOR));
+			int local = 1;
+			for (final Class<?> parameter : type.parameterArray()) {
+				local += code.load(parameter, local);
+			}
+			code.op2(INVOKEVIRTUAL, writer.methodRef(HANDLE, "invokeExact", type.toMethodDescriptorString()))
+				.returns(type.returnType());
+			writer.method(ACC_PUBLIC, methods.get(i).getName(), type.toMethodDescriptorString(), code);
+		}
+
+		return writer.toByteArray();
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Finds the components of records, which {@link Records} is built on. Records only
+ * exist from Java 16, so until then no class is one; the multi-release JAR
+ * replaces this class on 16 and later with one that asks {@link Class} for them.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class RecordSupport {
+
+	static boolean isRecord(@NotNull final Class<?> type) {
+		return false;
+	}
+
+	/**
+	 * @param type the class to inspect
+	 * @return the accessors of the record components in declaration order, or
+	 *         {@code null} if the class is not a record
+	 */
+	@Nullable
+	static Method[] accessors(@NotNull final Class<?> type) {
+		return null;
+	}
+
+}
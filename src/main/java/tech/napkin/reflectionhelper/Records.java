@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Fast access to the components of records. The accessors and the canonical
+ * constructor of a record class are resolved to {@link MethodHandle}s once and
+ * cached, so taking a record apart into its components and putting one back
+ * together again costs no reflection per call.
+ * <p>
+ * Records only exist from Java 16; before that, no class is a record and every
+ * method but {@link #isRecord(Class)} throws.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Records {
+
+	private static final ClassValue<Plan> plans = new ClassValue<Plan>() {
+		@Override
+		protected Plan computeValue(final Class<?> type) {
+			return new Plan(type);
+		}
+	};
+
+	@NotNull private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	/** @return whether the class is a record class */
+	public static boolean isRecord(@NotNull final Class<?> type) {
+		return RecordSupport.isRecord(type);
+	}
+
+	/** The names of the components of a record class, in declaration order. */
+	@NotNull
+	public static List<String> componentNames(@NotNull final Class<?> type) {
+		return plan(type).names;
+	}
+
+	/** The types of the components of a record class, in declaration order. */
+	@NotNull
+	public static List<Class<?>> componentTypes(@NotNull final Class<?> type) {
+		return plan(type).types;
+	}
+
+	/**
+	 * Get the accessor of a record component.
+	 *
+	 * @param type the record class
+	 * @param name the name of the component
+	 * @return the accessor, typed {@code (Object)<component type>}
+	 * @throws NoSuchMethodException (sneaky) if there is no such component
+	 */
+	@NotNull
+	public static MethodHandle accessor(@NotNull final Class<?> type, @NotNull final String name) {
+		final Plan plan = plan(type);
+		return plan.accessors[plan.indexOf(name)];
+	}
+
+	/**
+	 * Get the canonical constructor of a record class.
+	 *
+	 * @param type the record class
+	 * @return the constructor, typed {@code (<component types>)Object}
+	 */
+	@NotNull
+	public static MethodHandle canonicalConstructor(@NotNull final Class<?> type) {
+		return plan(type).constructor;
+	}
+
+	/**
+	 * Get the value of a record component.
+	 *
+	 * @param record the record
+	 * @param name the name of the component
+	 * @return the value, boxed if the component is primitive
+	 * @throws NoSuchMethodException (sneaky) if there is no such component
+	 */
+	@SneakyThrows
+	public static Object get(@NotNull final Object record, @NotNull final String name) {
+		final Plan plan = plan(record.getClass());
+		return plan.boxedAccessors[plan.indexOf(name)].invokeExact(record);
+	}
+
+	/**
+	 * Take a record apart into its components.
+	 *
+	 * @param record the record
+	 * @return the values of the components in declaration order, boxed where they are primitive
+	 */
+	@NotNull
+	public static Object[] toComponents(@NotNull final Object record) {
+		return toComponents(record, new Object[plan(record.getClass()).accessors.length]);
+	}
+
+	/**
+	 * Take a record apart into its components, reusing an array.
+	 *
+	 * @param record the record
+	 * @param into the array to fill, at least as long as there are components
+	 * @return {@code into}
+	 */
+	@NotNull
+	@SneakyThrows
+	public static Object[] toComponents(@NotNull final Object record, @NotNull final Object[] into) {
+		final MethodHandle[] accessors = plan(record.getClass()).boxedAccessors;
+		for (int i = 0; i < accessors.length; i++) {
+			into[i] = accessors[i].invokeExact(record);
+		}
+		return into;
+	}
+
+	/**
+	 * Put a record together from its components with its canonical constructor.
+	 *
+	 * @param type the record class
+	 * @param components the values of the components in declaration order, boxed
+	 *                   where they are primitive
+	 * @param <R> the record class
+	 * @return the new record
+	 * @throws ClassCastException if a value is not of the type of its component
+	 * @throws NullPointerException if a primitive component is {@code null}
+	 * @throws IllegalArgumentException if there are not as many values as components
+	 */
+	@NotNull
+	@SneakyThrows
+	@SuppressWarnings("unchecked")
+	public static <R> R fromComponents(@NotNull final Class<R> type, @NotNull final Object... components) {
+		final Plan plan = plan(type);
+		if (components.length != plan.accessors.length) {
+			throw new IllegalArgumentException(type.getName() + " has " + plan.accessors.length + " components, not " + components.length);
+		}
+		return (R) plan.spreadConstructor.invokeExact(components);
+	}
+
+	@NotNull
+	private static Plan plan(@NotNull final Class<?> type) {
+		if (!RecordSupport.isRecord(type)) throw new IllegalArgumentException(type.getName() + " is not a record");
+		return plans.get(type);
+	}
+
+	private static final class Plan {
+
+		@NotNull final Class<?> type;
+		@NotNull final List<String> names;
+		@NotNull final List<Class<?>> types;
+		/** Typed {@code (Object)<component type>}. */
+		@NotNull final MethodHandle[] accessors;
+		/** Typed {@code (Object)Object}. */
+		@NotNull final MethodHandle[] boxedAccessors;
+		/** Typed {@code (<component types>)Object}. */
+		@NotNull final MethodHandle constructor;
+		/** Typed {@code (Object[])Object}. */
+		@NotNull final MethodHandle spreadConstructor;
+
+		@SneakyThrows({NoSuchMethodException.class, IllegalAccessException.class})
+		Plan(@NotNull final Class<?> type) {
+			this.type = type;
+			final Method[] methods = RecordSupport.accessors(type);
+			assert methods != null;
+
+			final int length = methods.length;
+			final String[] names = new String[length];
+			final Class<?>[] types = new Class<?>[length];
+			accessors = new MethodHandle[length];
+			boxedAccessors = new MethodHandle[length];
+			for (int i = 0; i < length; i++) {
+				final Method method = _Permission.ensureAccessible(ReflectionConfig.recordMethod(methods[i]));
+				names[i] = method.getName();
+				types[i] = method.getReturnType();
+				accessors[i] = lookup.unreflect(method).asType(MethodType.methodType(types[i], Object.class));
+				boxedAccessors[i] = accessors[i].asType(MethodType.methodType(Object.class, Object.class));
+			}
+			this.names = Collections.unmodifiableList(Arrays.asList(names));
+			this.types = Collections.unmodifiableList(Arrays.asList(types));
+
+			constructor = lookup.unreflectConstructor(_Permission.ensureAccessible(ReflectionConfig.recordMethod(type.getDeclaredConstructor(types))))
+				.asType(MethodType.methodType(Object.class, types));
+			spreadConstructor = constructor.asType(MethodType.genericMethodType(length)).asSpreader(Object[].class, length);
+		}
+
+		@SneakyThrows(NoSuchMethodException.class)
+		int indexOf(@NotNull final String name) {
+			final int index = names.indexOf(name);
+			if (index == -1) throw new NoSuchMethodException(type.getName() + '.' + name + "()");
+			return index;
+		}
+
+	}
+
+}
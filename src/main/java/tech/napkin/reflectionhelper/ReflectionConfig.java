@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Records every class and member this library resolves, and writes them out as a
+ * GraalVM native-image {@code reflect-config.json}, so that the reflection done in
+ * a test run is registered for the native image.
+ * <p>
+ * Recording is off by default and costs a single volatile read per resolution
+ * when off. It can be switched on with {@link #start()}, or for a whole run by
+ * setting the {@value #PROPERTY} system property to the file the configuration is
+ * to be written to when the JVM exits.
+ * <p>
+ * Fields written through the library are registered with {@code allowWrite}, and
+ * the generated {@link Accessors.Accessor} of a class is registered along with the
+ * class, as it is looked up reflectively too.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class ReflectionConfig {
+
+	/** The system property naming the file to record the whole run into. */
+	public static final String PROPERTY = "tech.napkin.reflectionhelper.reflectConfig";
+
+	private static volatile boolean recording;
+
+	/** Class name to the names of its fields, mapped to whether they are written. */
+	@NotNull private static final ConcurrentMap<String, ConcurrentMap<String, Boolean>> fields = new ConcurrentHashMap<>();
+	/** Class name to the signatures of its methods and constructors, mapped to their JSON. */
+	@NotNull private static final ConcurrentMap<String, ConcurrentMap<String, String>> methods = new ConcurrentHashMap<>();
+	/** Names of classes instantiated without a constructor. */
+	@NotNull private static final Set<String> allocated = ConcurrentHashMap.newKeySet();
+
+	static {
+		final String file = System.getProperty(PROPERTY);
+		if (file != null) {
+			recording = true;
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> write(Paths.get(file)), "ReflectionConfig writer"));
+		}
+	}
+
+
+	/** Start recording resolved classes and members. */
+	public static void start() {
+		recording = true;
+	}
+
+	/** Stop recording. What has been recorded so far is kept. */
+	public static void stop() {
+		recording = false;
+	}
+
+	public static boolean isRecording() {
+		return recording;
+	}
+
+	/** Forget everything recorded so far. */
+	public static void clear() {
+		fields.clear();
+		methods.clear();
+		allocated.clear();
+	}
+
+
+	/*
+	 * The record methods return their argument, so that they can wrap the lookups
+	 * they record.
+	 */
+
+	@NotNull
+	static <T> Class<T> recordClass(@NotNull final Class<T> clazz) {
+		if (recording) {
+			entry(clazz);
+		}
+		return clazz;
+	}
+
+	/** Record a class that is instantiated without a constructor, see {@link Construction#allocate(Class)}. */
+	@NotNull
+	static <T> Class<T> recordAllocation(@NotNull final Class<T> clazz) {
+		if (recording) {
+			entry(clazz);
+			allocated.add(clazz.getName());
+		}
+		return clazz;
+	}
+
+	@NotNull
+	static Field recordField(@NotNull final Field field, final boolean write) {
+		if (recording) {
+			entry(field.getDeclaringClass()).merge(field.getName(), write, Boolean::logicalOr);
+		}
+		return field;
+	}
+
+	@NotNull
+	static <T extends Executable> T recordMethod(@NotNull final T method) {
+		if (recording) {
+			final String name = method instanceof Constructor ? "<init>" : method.getName();
+			final String parameters = Arrays.stream(method.getParameterTypes())
+				.map(type -> '"' + type.getTypeName() + '"')
+				.collect(Collectors.joining(", ", "[", "]"));
+			entry(method.getDeclaringClass());
+			methods(method.getDeclaringClass()).putIfAbsent(name + parameters,
+				"{\"name\": \"" + name + "\", \"parameterTypes\": " + parameters + "}");
+		}
+		return method;
+	}
+
+	/**
+	 * Register a class. The maps are handed back rather than looked up again, as
+	 * {@link #clear()} may remove them at any time.
+	 *
+	 * @return the recorded fields of the class
+	 */
+	@NotNull
+	private static ConcurrentMap<String, Boolean> entry(@NotNull final Class<?> clazz) {
+		methods(clazz);
+		return fields.computeIfAbsent(clazz.getName(), name -> new ConcurrentHashMap<>());
+	}
+
+	/** @return the recorded methods of the class */
+	@NotNull
+	private static ConcurrentMap<String, String> methods(@NotNull final Class<?> clazz) {
+		return methods.computeIfAbsent(clazz.getName(), name -> new ConcurrentHashMap<>());
+	}
+
+
+	/**
+	 * Write everything recorded so far as a {@code reflect-config.json}.
+	 *
+	 * @param file the file to write to, replacing it
+	 * @throws IOException if the file cannot be written
+	 */
+	@SneakyThrows(IOException.class)
+	public static void write(@NotNull final Path file) {
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			write(writer);
+		}
+	}
+
+	/**
+	 * Write everything recorded so far as a {@code reflect-config.json}. Entries are
+	 * sorted, so that the output of identical runs is identical.
+	 *
+	 * @param writer the writer to write to, which is not closed
+	 * @throws IOException if the writer fails
+	 */
+	public static void write(@NotNull final Writer writer) throws IOException {
+		final Map<String, Map<String, Boolean>> classes = new TreeMap<>();
+		fields.forEach((clazz, members) -> classes.put(clazz, new TreeMap<>(members)));
+
+		writer.write("[");
+		boolean first = true;
+		for (final Map.Entry<String, Map<String, Boolean>> clazz : classes.entrySet()) {
+			writer.write(first ? "\n" : ",\n");
+			first = false;
+			writer.write("  {\n    \"name\": \"" + clazz.getKey() + "\"");
+			if (allocated.contains(clazz.getKey())) {
+				writer.write(",\n    \"unsafeAllocated\": true");
+			}
+
+			if (!clazz.getValue().isEmpty()) {
+				writer.write(",\n    \"fields\": [" + clazz.getValue().entrySet().stream()
+					.map(field -> "\n      {\"name\": \"" + field.getKey() + "\"" + (field.getValue() ? ", \"allowWrite\": true}" : "}"))
+					.collect(Collectors.joining(",")) + "\n    ]");
+			}
+
+			@Nullable final Map<String, String> declared = methods.get(clazz.getKey());
+			if (declared != null && !declared.isEmpty()) {
+				writer.write(",\n    \"methods\": [" + new TreeMap<>(declared).values().stream()
+					.map(method -> "\n      " + method)
+					.collect(Collectors.joining(",")) + "\n    ]");
+			}
+			writer.write("\n  }");
+		}
+		writer.write("\n]\n");
+	}
+
+}
@@ -35,44 +35,50 @@ import java.io.FilterOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A class that allows for the disabling of illegal access warnings.
+ * <p>
+ * Suppressed warnings are dropped by default. With {@link #setAggregating(boolean)}
+ * they are counted per member accessed instead, to be looked at later with
+ * {@link #counts()} or {@link #dump(PrintStream)}.
+ * <p>
+ * On Java 17 and later illegal access is denied rather than warned about, so there
+ * is nothing to suppress and none of this does anything.
  *
  * @noinspection unused
  */
 public final class ReflectionWarnings extends PrintStream {
 
-	@NotNull private static final ReflectionWarnings ourStream = new ReflectionWarnings();
+	private static final String WARNING = "WARNING: ", ACCESS = "WARNING: Illegal reflective access by ", TO = " to ";
 
-	/** The old error stream, for restoring. */
-	private static PrintStream oldStream;
+	/** The class whose warnings are suppressed, or {@code null} if this JDK has none. */
+	@Nullable private static final Class<?> loggerClass = SneakyWrappers.Reflect.findClass("jdk.internal.module.IllegalAccessLogger");
 
-	@NotNull private static final Object theLogger = SneakyWrappers.Objects.Get.ByName.field("jdk.internal.module.IllegalAccessLogger", "logger", 1, null);
-	@NotNull private static final Field theStream = SneakyWrappers.Reflect.ByName.getDeclaredField("jdk.internal.module.IllegalAccessLogger", 2, "warningStream");
+	@Nullable private static final Object theLogger = loggerClass == null ? null : SneakyWrappers.Objects.Get.ByClass.field(loggerClass, "logger", 1, null);
+	@Nullable private static final Field theStream = loggerClass == null ? null : SneakyWrappers.Reflect.ByName.getDeclaredField(loggerClass.getName(), 2, "warningStream");
 
-	@NotNull private static final Method getCallerClass = SneakyWrappers.Reflect.ByName.getDeclaredMethod("jdk.internal.reflect.Reflection", 2, "getCallerClass");
+	@NotNull private static final StackWalker walker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
 
+	@NotNull private static final ReflectionWarnings ourStream = new ReflectionWarnings();
 
-	private static Field obtainStream() {
-		return SneakyWrappers.Reflect.ByName.getDeclaredField("jdk.internal.module.IllegalAccessLogger", 2, "warningStream");
-	}
+	/** The old error stream, for restoring. */
+	private static PrintStream oldStream;
+
+	private static volatile boolean aggregating;
 
-//	@SneakyThrows({NoSuchFieldException.class, IllegalAccessException.class})
-//	private static IllegalAccessLogger obtainLogger() {
-//		return (IllegalAccessLogger) _Permission.modifyPermission(IllegalAccessLogger.class.getDeclaredField("logger"), 0).get(null);
-//	}
-//
-//	@SneakyThrows({NoSuchFieldException.class, IllegalAccessException.class})
-//	private static OutputStream obtainSysOut() {
-//		return (OutputStream) _Permission.modifyPermission(FilterOutputStream.class.getDeclaredField("out"), 0).get(theStream.get(theLogger));
-//	}
+	/** Suppressed warnings by the member accessed. */
+	@NotNull private static final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
 
 	@SneakyThrows(IllegalAccessException.class)
 	public static void disableWarnings() {
 		if (oldStream == null) {
+			if (theStream == null) return;
 			oldStream = (PrintStream) theStream.get(theLogger);
 			theStream.set(theLogger, ourStream);
 		} else {
@@ -84,24 +90,67 @@ public final class ReflectionWarnings extends PrintStream {
 	public static void enableWarnings() {
 		if (oldStream != null) {
 			theStream.set(theLogger, oldStream);
-		} else {
+			oldStream = null;
+		} else if (theStream != null) {
 			throw new IllegalStateException("Warnings already enabled!");
 		}
 	}
 
+	/**
+	 * Whether suppressed warnings should be counted, per member accessed, rather
+	 * than dropped. Counting costs a map lookup per warning.
+	 */
+	public static void setAggregating(final boolean aggregating) {
+		ReflectionWarnings.aggregating = aggregating;
+	}
+
+	public static boolean isAggregating() {
+		return aggregating;
+	}
+
+	/** @return a sorted copy of the number of suppressed warnings per member accessed */
+	@NotNull
+	public static Map<String, Long> counts() {
+		final Map<String, Long> copy = new TreeMap<>();
+		counts.forEach((member, count) -> copy.put(member, count.sum()));
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/** Print the suppressed warnings counted so far, one member per line, most frequent first. */
+	public static void dump(@NotNull final PrintStream out) {
+		counts().entrySet().stream()
+			.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+			.forEach(e -> out.println(e.getValue() + "\t" + e.getKey()));
+	}
+
+	public static void clearCounts() {
+		counts.clear();
+	}
+
 	private ReflectionWarnings() {
-		super((OutputStream) SneakyWrappers.Objects.Get.ByClass.field(FilterOutputStream.class, "out", 0,
+		super(theStream == null ? System.err : (OutputStream) SneakyWrappers.Objects.Get.ByClass.field(FilterOutputStream.class, "out", 0,
 			SneakyWrappers.Objects.Get.ByField.field(theStream, theLogger)));
 	}
 
-	@SneakyThrows({IllegalAccessException.class, InvocationTargetException.class})
 	@Override
 	public void println(final @Nullable String x) {
-		if (!(SneakyWrappers.Reflect.getClass("jdk.internal.module.IllegalAccessLogger").equals(getCallerClass.invoke(null)) &&
-			String.valueOf(x).startsWith("WARNING: "))) {
+		if (x == null || !x.startsWith(WARNING) || walker.getCallerClass() != loggerClass) {
 			super.println(x);
+		} else if (aggregating) {
+			count(x);
 		}
 	}
 
+	/** Count the member in the access line of a warning, which may be one of several lines printed at once. */
+	private static void count(@NotNull final String warning) {
+		final int access = warning.indexOf(ACCESS);
+		final int to = access == -1 ? -1 : warning.indexOf(TO, access + ACCESS.length());
+		if (to == -1) return;
+
+		int end = to + TO.length();
+		while (end < warning.length() && warning.charAt(end) != '\n' && warning.charAt(end) != '\r') end++;
+		counts.computeIfAbsent(warning.substring(to + TO.length(), end), k -> new LongAdder()).increment();
+	}
+
 
 }
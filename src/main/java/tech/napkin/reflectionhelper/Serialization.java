@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * A binary serializer that writes the fields of objects straight into a
+ * {@link ByteBuffer}, heap or direct, and reads them back.
+ * <p>
+ * Every class gets a cached schema of its non-transient instance fields, so
+ * writing an object is a loop over method handles; primitive fields and arrays
+ * of primitives are written without boxing. Objects are read back without
+ * running any of their constructors (see {@link Construction#allocate(Class)}),
+ * so they need neither a no-args constructor nor to be {@link java.io.Serializable}.
+ * <p>
+ * The format carries no class information for values whose class is exactly the
+ * declared type of their field; the written object itself and values of other
+ * classes are prefixed with their class name. Strings, boxed primitives, enums,
+ * classes and arrays are written as values rather than through their fields. The
+ * byte order of the buffer is respected, and the same order must be used to read.
+ * <p>
+ * Object graphs must be trees: shared references are written once per
+ * reference, and cycles will produce a {@link StackOverflowError}.
+ * <p>
+ * Only plain data classes can be written field by field. Classes that customize
+ * their serialization with {@code writeObject}, {@code readObject},
+ * {@code writeReplace} or {@code readResolve} - such as most collections - keep
+ * part of their state in transient fields, and classes of the JDK's own modules
+ * can't be opened on 9 and later, so both are rejected with an
+ * {@link IllegalArgumentException}, including as superclasses. Such an exception
+ * leaves the buffer partially written.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Serialization {
+
+	/* reference tags */
+	private static final byte NULL = 0, EXACT = 1, NAMED = 2;
+
+	/* field kinds */
+	private static final int REFERENCE = 0, BOOLEAN = 1, BYTE = 2, CHAR = 3, SHORT = 4, INT = 5, FLOAT = 6, LONG = 7, DOUBLE = 8;
+
+	private static final ClassValue<Schema> schemas = new ClassValue<Schema>() {
+		@Override
+		protected Schema computeValue(final Class<?> type) {
+			Schema.checkSupported(type); // before the plan opens the fields
+			return new Schema(FieldPlan.of(type));
+		}
+	};
+
+
+	/**
+	 * Write an object into a buffer, starting at the buffer's position.
+	 *
+	 * @param object the object to be written, may be {@code null}
+	 * @param buffer the buffer to write into
+	 * @return the passed buffer to allow for method chaining
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 */
+	@NotNull
+	public static ByteBuffer write(@Nullable final Object object, @NotNull final ByteBuffer buffer) {
+		writeReference(Object.class, object, buffer);
+		return buffer;
+	}
+
+	/**
+	 * Read an object of the specified class from a buffer, starting at the buffer's
+	 * position.
+	 *
+	 * @param clazz the class of the object, or a superclass of it; its class loader
+	 *              loads the classes named in the buffer
+	 * @param buffer the buffer to read from
+	 * @param <T> the type of the object
+	 * @return the object that was read, which may be {@code null}
+	 * @throws java.nio.BufferUnderflowException if the buffer ends before the object does
+	 * @throws ClassCastException if the object that was read is not of the class
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	public static <T> T read(@NotNull final Class<T> clazz, @NotNull final ByteBuffer buffer) {
+		final ClassLoader loader = clazz.getClassLoader();
+		final Object object = readReference(Object.class, buffer, loader == null ? Thread.currentThread().getContextClassLoader() : loader);
+		if (object != null && !MethodType.methodType(clazz).wrap().returnType().isInstance(object)) {
+			throw new ClassCastException("Read a " + object.getClass().getName() + ", not a " + clazz.getName());
+		}
+		return (T) object;
+	}
+
+
+	private static void writeReference(@NotNull final Class<?> declared, @Nullable final Object value, @NotNull final ByteBuffer buffer) {
+		if (value == null) {
+			buffer.put(NULL);
+			return;
+		}
+
+		final Class<?> clazz = value.getClass();
+		if (clazz == declared) {
+			buffer.put(EXACT);
+		} else {
+			buffer.put(NAMED);
+			writeString(clazz.getName(), buffer);
+		}
+		writeValue(clazz, value, buffer);
+	}
+
+	@SneakyThrows
+	private static void writeValue(@NotNull final Class<?> clazz, @NotNull final Object value, @NotNull final ByteBuffer buffer) {
+		if (clazz == String.class) {
+			writeString((String) value, buffer);
+		} else if (clazz.isArray()) {
+			writeArray(clazz.getComponentType(), value, buffer);
+		} else if (value instanceof Enum) {
+			writeString(((Enum<?>) value).name(), buffer);
+		} else if (clazz == Class.class) {
+			writeString(((Class<?>) value).getName(), buffer);
+		} else if (clazz == Integer.class) {
+			buffer.putInt((Integer) value);
+		} else if (clazz == Long.class) {
+			buffer.putLong((Long) value);
+		} else if (clazz == Double.class) {
+			buffer.putDouble((Double) value);
+		} else if (clazz == Float.class) {
+			buffer.putFloat((Float) value);
+		} else if (clazz == Boolean.class) {
+			buffer.put((byte) ((Boolean) value ? 1 : 0));
+		} else if (clazz == Byte.class) {
+			buffer.put((Byte) value);
+		} else if (clazz == Character.class) {
+			buffer.putChar((Character) value);
+		} else if (clazz == Short.class) {
+			buffer.putShort((Short) value);
+		} else {
+			final Schema schema = schemas.get(clazz);
+			for (int i = 0; i < schema.kinds.length; i++) {
+				final MethodHandle getter = schema.getters[i];
+				switch (schema.kinds[i]) {
+					case BOOLEAN: buffer.put((byte) ((boolean) getter.invokeExact(value) ? 1 : 0)); break;
+					case BYTE:    buffer.put((byte) getter.invokeExact(value)); break;
+					case CHAR:    buffer.putChar((char) getter.invokeExact(value)); break;
+					case SHORT:   buffer.putShort((short) getter.invokeExact(value)); break;
+					case INT:     buffer.putInt((int) getter.invokeExact(value)); break;
+					case FLOAT:   buffer.putFloat((float) getter.invokeExact(value)); break;
+					case LONG:    buffer.putLong((long) getter.invokeExact(value)); break;
+					case DOUBLE:  buffer.putDouble((double) getter.invokeExact(value)); break;
+					default:      writeReference(schema.types[i], (Object) getter.invokeExact(value), buffer);
+				}
+			}
+		}
+	}
+
+	private static void writeArray(@NotNull final Class<?> component, @NotNull final Object array, @NotNull final ByteBuffer buffer) {
+		final int length = Array.getLength(array);
+		buffer.putInt(length);
+		if (component == int.class) {
+			buffer.asIntBuffer().put((int[]) array);
+			buffer.position(buffer.position() + length * Integer.BYTES);
+		} else if (component == long.class) {
+			buffer.asLongBuffer().put((long[]) array);
+			buffer.position(buffer.position() + length * Long.BYTES);
+		} else if (component == double.class) {
+			buffer.asDoubleBuffer().put((double[]) array);
+			buffer.position(buffer.position() + length * Double.BYTES);
+		} else if (component == float.class) {
+			buffer.asFloatBuffer().put((float[]) array);
+			buffer.position(buffer.position() + length * Float.BYTES);
+		} else if (component == char.class) {
+			buffer.asCharBuffer().put((char[]) array);
+			buffer.position(buffer.position() + length * Character.BYTES);
+		} else if (component == short.class) {
+			buffer.asShortBuffer().put((short[]) array);
+			buffer.position(buffer.position() + length * Short.BYTES);
+		} else if (component == byte.class) {
+			buffer.put((byte[]) array);
+		} else if (component == boolean.class) {
+			for (final boolean b : (boolean[]) array) buffer.put((byte) (b ? 1 : 0));
+		} else {
+			for (final Object element : (Object[]) array) writeReference(component, element, buffer);
+		}
+	}
+
+	private static void writeString(@NotNull final String string, @NotNull final ByteBuffer buffer) {
+		buffer.putInt(string.length());
+		buffer.asCharBuffer().put(string);
+		buffer.position(buffer.position() + string.length() * Character.BYTES);
+	}
+
+
+	@Nullable
+	@SneakyThrows(ClassNotFoundException.class)
+	private static Object readReference(@NotNull final Class<?> declared, @NotNull final ByteBuffer buffer, @Nullable final ClassLoader loader) {
+		switch (buffer.get()) {
+			case NULL:  return null;
+			case EXACT: return readValue(declared, buffer, loader);
+			case NAMED: return readValue(ReflectionConfig.recordClass(Class.forName(readString(buffer), false, loader)), buffer, loader);
+			default:    throw new IllegalStateException("Corrupt buffer at position " + (buffer.position() - 1));
+		}
+	}
+
+	@NotNull
+	@SneakyThrows
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object readValue(@NotNull final Class<?> clazz, @NotNull final ByteBuffer buffer, @Nullable final ClassLoader loader) {
+		if (clazz == String.class) {
+			return readString(buffer);
+		} else if (clazz.isArray()) {
+			return readArray(clazz.getComponentType(), buffer, loader);
+		} else if (Enum.class.isAssignableFrom(clazz)) {
+			// constants with a body are subclasses of their enum
+			return Enum.valueOf((Class<? extends Enum>) (clazz.isEnum() ? clazz : clazz.getSuperclass()), readString(buffer));
+		} else if (clazz == Class.class) {
+			return ReflectionConfig.recordClass(Class.forName(readString(buffer), false, loader));
+		} else if (clazz == Integer.class) {
+			return buffer.getInt();
+		} else if (clazz == Long.class) {
+			return buffer.getLong();
+		} else if (clazz == Double.class) {
+			return buffer.getDouble();
+		} else if (clazz == Float.class) {
+			return buffer.getFloat();
+		} else if (clazz == Boolean.class) {
+			return buffer.get() != 0;
+		} else if (clazz == Byte.class) {
+			return buffer.get();
+		} else if (clazz == Character.class) {
+			return buffer.getChar();
+		} else if (clazz == Short.class) {
+			return buffer.getShort();
+		}
+
+		final Schema schema = schemas.get(clazz);
+		final Object object = Construction.allocate(clazz);
+		for (int i = 0; i < schema.kinds.length; i++) {
+			final MethodHandle setter = schema.setter(i);
+			switch (schema.kinds[i]) {
+				case BOOLEAN: setter.invokeExact(object, buffer.get() != 0); break;
+				case BYTE:    setter.invokeExact(object, buffer.get()); break;
+				case CHAR:    setter.invokeExact(object, buffer.getChar()); break;
+				case SHORT:   setter.invokeExact(object, buffer.getShort()); break;
+				case INT:     setter.invokeExact(object, buffer.getInt()); break;
+				case FLOAT:   setter.invokeExact(object, buffer.getFloat()); break;
+				case LONG:    setter.invokeExact(object, buffer.getLong()); break;
+				case DOUBLE:  setter.invokeExact(object, buffer.getDouble()); break;
+				default:      setter.invokeExact(object, readReference(schema.types[i], buffer, loader));
+			}
+		}
+		return object;
+	}
+
+	@NotNull
+	private static Object readArray(@NotNull final Class<?> component, @NotNull final ByteBuffer buffer, @Nullable final ClassLoader loader) {
+		final int length = buffer.getInt();
+		if (component == int.class) {
+			final int[] array = new int[length];
+			buffer.asIntBuffer().get(array);
+			buffer.position(buffer.position() + length * Integer.BYTES);
+			return array;
+		} else if (component == long.class) {
+			final long[] array = new long[length];
+			buffer.asLongBuffer().get(array);
+			buffer.position(buffer.position() + length * Long.BYTES);
+			return array;
+		} else if (component == double.class) {
+			final double[] array = new double[length];
+			buffer.asDoubleBuffer().get(array);
+			buffer.position(buffer.position() + length * Double.BYTES);
+			return array;
+		} else if (component == float.class) {
+			final float[] array = new float[length];
+			buffer.asFloatBuffer().get(array);
+			buffer.position(buffer.position() + length * Float.BYTES);
+			return array;
+		} else if (component == char.class) {
+			final char[] array = new char[length];
+			buffer.asCharBuffer().get(array);
+			buffer.position(buffer.position() + length * Character.BYTES);
+			return array;
+		} else if (component == short.class) {
+			final short[] array = new short[length];
+			buffer.asShortBuffer().get(array);
+			buffer.position(buffer.position() + length * Short.BYTES);
+			return array;
+		} else if (component == byte.class) {
+			final byte[] array = new byte[length];
+			buffer.get(array);
+			return array;
+		} else if (component == boolean.class) {
+			final boolean[] array = new boolean[length];
+			for (int i = 0; i < length; i++) array[i] = buffer.get() != 0;
+			return array;
+		}
+
+		final Object[] array = (Object[]) Array.newInstance(component, length);
+		for (int i = 0; i < length; i++) array[i] = readReference(component, buffer, loader);
+		return array;
+	}
+
+	@NotNull
+	private static String readString(@NotNull final ByteBuffer buffer) {
+		final char[] chars = new char[buffer.getInt()];
+		buffer.asCharBuffer().get(chars);
+		buffer.position(buffer.position() + chars.length * Character.BYTES);
+		return new String(chars);
+	}
+
+
+	/** The non-transient fields of a class, with handles typed for {@code invokeExact}. */
+	private static final class Schema {
+
+		/** The methods of {@link java.io.Serializable} classes that customize what is written. */
+		private static final List<String> CUSTOM = Arrays.asList("writeObject", "readObject", "writeReplace", "readResolve");
+
+		@NotNull private final FieldPlan plan;
+		@NotNull private final int[] indices;
+		@NotNull private final int[] kinds;
+		@NotNull private final Class<?>[] types;
+		/** Exactly typed for primitives, {@code (Object)Object} for references. */
+		@NotNull private final MethodHandle[] getters;
+
+		private Schema(@NotNull final FieldPlan plan) {
+			this.plan = plan;
+			indices = IntStream.range(0, plan.fields.length)
+				.filter(i -> Modifiers.Not.Transient(plan.fields[i])).toArray();
+
+			kinds = new int[indices.length];
+			types = new Class<?>[indices.length];
+			getters = new MethodHandle[indices.length];
+			for (int i = 0; i < indices.length; i++) {
+				final int index = indices[i];
+				types[i] = plan.types[index];
+				kinds[i] = kind(types[i]);
+				getters[i] = kinds[i] == REFERENCE ? plan.boxedGetters[index] : plan.getters[index];
+			}
+		}
+
+		/** Exactly typed for primitives, {@code (Object, Object)void} for references. */
+		@NotNull
+		@SneakyThrows(IllegalAccessException.class)
+		private MethodHandle setter(final int i) {
+			final MethodHandle setter = kinds[i] == REFERENCE ? plan.boxedSetters[indices[i]] : plan.setters[indices[i]];
+			if (setter == null) {
+				throw new IllegalAccessException("Cannot set final field " + plan.fields[indices[i]]);
+			}
+			return setter;
+		}
+
+		/** Reject classes whose state is not all in their non-transient fields, or that can't be opened. */
+		private static void checkSupported(@NotNull final Class<?> type) {
+			for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+				final Module module = c.getModule();
+				if (module.isNamed() && (module.getName().startsWith("java.") || module.getName().startsWith("jdk."))) {
+					throw new IllegalArgumentException(type.getName() + " can't be serialized by its fields: "
+						+ c.getName() + " is in the JDK module " + module.getName());
+				}
+				for (final Method method : c.getDeclaredMethods()) {
+					if (CUSTOM.contains(method.getName()) && !Modifier.isStatic(method.getModifiers())) {
+						throw new IllegalArgumentException(type.getName() + " can't be serialized by its fields: "
+							+ c.getName() + " declares " + method.getName());
+					}
+				}
+			}
+		}
+
+		private static int kind(@NotNull final Class<?> type) {
+			if (!type.isPrimitive()) return REFERENCE;
+			return 1 + Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class, float.class, long.class, double.class).indexOf(type);
+		}
+
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A copy of the instance fields of an object, to find out later which of them
+ * have changed, the way an ORM checks its entities for changes at the end of a
+ * transaction.
+ * <p>
+ * A snapshot is two arrays and nothing else: every primitive field is stored as
+ * its bits in a {@code long[]}, and every reference field in an {@code Object[]},
+ * compared by identity. The handles that fill and compare them are planned once
+ * per class from its {@link FieldPlan}, so taking and checking snapshots of
+ * thousands of objects costs no lookups, no boxing and two small allocations each.
+ * <p>
+ * Floating point fields are compared by their raw bits, so a field that was
+ * {@code NaN} and still is hasn't changed.
+ *
+ * @noinspection unused
+ */
+public final class Snapshot {
+
+	private static final ClassValue<Plan> plans = new ClassValue<Plan>() {
+		@Override
+		protected Plan computeValue(final Class<?> type) {
+			return new Plan(FieldPlan.of(type));
+		}
+	};
+
+	@NotNull private final Plan plan;
+	@NotNull private final long[] primitives;
+	@NotNull private final Object[] references;
+
+	private Snapshot(@NotNull final Plan plan) {
+		this.plan = plan;
+		primitives = new long[plan.primitives.length];
+		references = new Object[plan.references.length];
+	}
+
+	/**
+	 * Take a snapshot of every instance field of an object.
+	 *
+	 * @param instance the object to take a snapshot of
+	 * @return the new snapshot
+	 */
+	@NotNull
+	public static Snapshot of(@NotNull final Object instance) {
+		final Snapshot snapshot = new Snapshot(plans.get(instance.getClass()));
+		snapshot.update(instance);
+		return snapshot;
+	}
+
+	/** The class of the objects this snapshot can be compared with. */
+	@NotNull
+	public Class<?> type() {
+		return plan.plan.type;
+	}
+
+	/**
+	 * Replace the snapshot with the current state of the object, in place, such as
+	 * after its changes have been flushed.
+	 *
+	 * @param instance an object of exactly the snapshotted class
+	 */
+	@SneakyThrows
+	public void update(@NotNull final Object instance) {
+		check(instance);
+		for (int i = 0; i < primitives.length; i++) {
+			primitives[i] = (long) plan.primitives[i].invokeExact(instance);
+		}
+		for (int i = 0; i < references.length; i++) {
+			references[i] = (Object) plan.references[i].invokeExact(instance);
+		}
+	}
+
+	/**
+	 * @param instance an object of exactly the snapshotted class
+	 * @return whether any field of the object differs from the snapshot
+	 */
+	@SneakyThrows
+	public boolean isDirty(@NotNull final Object instance) {
+		check(instance);
+		for (int i = 0; i < primitives.length; i++) {
+			if (primitives[i] != (long) plan.primitives[i].invokeExact(instance)) return true;
+		}
+		for (int i = 0; i < references.length; i++) {
+			if (references[i] != (Object) plan.references[i].invokeExact(instance)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param instance an object of exactly the snapshotted class
+	 * @return the names of the fields of the object that differ from the snapshot,
+	 * in declaration order with superclass fields first
+	 */
+	@NotNull
+	@SneakyThrows
+	public List<String> dirtyFields(@NotNull final Object instance) {
+		check(instance);
+		final boolean[] dirty = new boolean[plan.plan.fields.length];
+		for (int i = 0; i < primitives.length; i++) {
+			dirty[plan.primitiveIndices[i]] = primitives[i] != (long) plan.primitives[i].invokeExact(instance);
+		}
+		for (int i = 0; i < references.length; i++) {
+			dirty[plan.referenceIndices[i]] = references[i] != (Object) plan.references[i].invokeExact(instance);
+		}
+
+		final List<String> names = new ArrayList<>();
+		for (int i = 0; i < dirty.length; i++) {
+			if (dirty[i]) names.add(plan.plan.names[i]);
+		}
+		return names;
+	}
+
+	private void check(@NotNull final Object instance) {
+		if (instance.getClass() != plan.plan.type) {
+			throw new ClassCastException("Snapshot of " + plan.plan.type.getName() + " compared with " + instance.getClass().getName());
+		}
+	}
+
+
+	/** The fields of a class split into primitives and references, with handles typed for {@code invokeExact}. */
+	private static final class Plan {
+
+		@NotNull private final FieldPlan plan;
+
+		@NotNull private final int[] primitiveIndices;
+		/** Typed {@code (Object)long}, returning the bits of the field. */
+		@NotNull private final MethodHandle[] primitives;
+
+		@NotNull private final int[] referenceIndices;
+		/** Typed {@code (Object)Object}. */
+		@NotNull private final MethodHandle[] references;
+
+		@SneakyThrows({NoSuchMethodException.class, IllegalAccessException.class})
+		private Plan(@NotNull final FieldPlan plan) {
+			this.plan = plan;
+			primitiveIndices = IntStream.range(0, plan.fields.length).filter(i -> plan.types[i].isPrimitive()).toArray();
+			referenceIndices = IntStream.range(0, plan.fields.length).filter(i -> !plan.types[i].isPrimitive()).toArray();
+
+			primitives = new MethodHandle[primitiveIndices.length];
+			for (int i = 0; i < primitives.length; i++) {
+				primitives[i] = bits(plan.getters[primitiveIndices[i]], plan.types[primitiveIndices[i]]);
+			}
+			references = new MethodHandle[referenceIndices.length];
+			for (int i = 0; i < references.length; i++) {
+				references[i] = plan.boxedGetters[referenceIndices[i]];
+			}
+		}
+
+		/** Adapt a getter to return the bits of its primitive value as a {@code long}. */
+		@NotNull
+		private static MethodHandle bits(@NotNull MethodHandle getter, @NotNull final Class<?> type) throws NoSuchMethodException, IllegalAccessException {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			if (type == float.class) {
+				getter = MethodHandles.filterReturnValue(getter, lookup.findStatic(Float.class, "floatToRawIntBits", MethodType.methodType(int.class, float.class)));
+			} else if (type == double.class) {
+				getter = MethodHandles.filterReturnValue(getter, lookup.findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class)));
+			}
+			// booleans become 0 or 1, everything else is widened
+			return MethodHandles.explicitCastArguments(getter, MethodType.methodType(long.class, Object.class));
+		}
+
+	}
+
+}
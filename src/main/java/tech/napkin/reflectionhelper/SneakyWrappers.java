@@ -33,9 +33,15 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -55,6 +61,28 @@ public final class SneakyWrappers {
 	@NoArgsConstructor(access = PRIVATE)
 	public static final class Objects {
 
+		/**
+		 * Read a field through the {@link Accessors.Accessor} generated for its class.
+		 * A permission of -1 takes access away, so it always goes through reflection.
+		 *
+		 * @return the value of the field, or {@link Accessors.Accessor#NOT_HANDLED} if there is no accessor covering it
+		 */
+		private static Object generatedGet(@NotNull final Class<?> clazz, @NotNull final String fieldName, final int permission, @Nullable final Object instance) {
+			final Accessors.Accessor accessor = permission == -1 ? null : Accessors.of(clazz);
+			return accessor == null ? Accessors.Accessor.NOT_HANDLED : accessor.get(instance, fieldName);
+		}
+
+		/**
+		 * Write a field through the {@link Accessors.Accessor} generated for its class.
+		 * A permission of -1 takes access away, so it always goes through reflection.
+		 *
+		 * @return whether there was an accessor covering the field
+		 */
+		private static boolean generatedSet(@NotNull final Class<?> clazz, @NotNull final String fieldName, final int permission, @Nullable final Object instance, @Nullable final Object value) {
+			final Accessors.Accessor accessor = permission == -1 ? null : Accessors.of(clazz);
+			return accessor != null && accessor.set(instance, fieldName, value);
+		}
+
 		@NoArgsConstructor(access = PRIVATE)
 		public static final class Get {
 
@@ -64,7 +92,9 @@ public final class SneakyWrappers {
 				@SuppressWarnings("unchecked")
 				@SneakyThrows({NoSuchFieldException.class, IllegalAccessException.class})
 				public static <T> T field(@NotNull final Class<?> clazz, @NotNull final String fieldName, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance) {
-					return (T) _Permission.modifyPermission(clazz.getDeclaredField(fieldName), permission).get(instance);
+					final Object generated = generatedGet(clazz, fieldName, permission, instance);
+					if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+					return (T) ReflectionConfig.recordField(Members.field(clazz, fieldName, permission), false).get(instance);
 				}
 
 				public static <T> T field(@NotNull final Class<?> clazz, @NotNull final String fieldName, @Nullable final Object instance) {
@@ -80,7 +110,10 @@ public final class SneakyWrappers {
 				@SuppressWarnings("unchecked")
 				@SneakyThrows({ClassNotFoundException.class, NoSuchFieldException.class, IllegalAccessException.class})
 				public static <T> T field(@NotNull final String className, @NotNull final String fieldName, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance) {
-					return (T) _Permission.modifyPermission(Class.forName(className).getDeclaredField(fieldName), permission).get(instance);
+					final Class<?> clazz = ReflectionConfig.recordClass(Class.forName(className));
+					final Object generated = generatedGet(clazz, fieldName, permission, instance);
+					if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+					return (T) ReflectionConfig.recordField(Members.field(clazz, fieldName, permission), false).get(instance);
 				}
 
 				public static <T> T field(@NotNull final String className, @NotNull final String fieldName, @Nullable final Object instance) {
@@ -96,7 +129,9 @@ public final class SneakyWrappers {
 				@SuppressWarnings("unchecked")
 				@SneakyThrows(IllegalAccessException.class)
 				public static <T> T field(@NotNull final Field field, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance) {
-					return (T) _Permission.modifyPermission(field, permission).get(instance);
+					final Object generated = generatedGet(field.getDeclaringClass(), field.getName(), permission, instance);
+					if (generated != Accessors.Accessor.NOT_HANDLED) return (T) generated;
+					return (T) _Permission.modifyPermission(ReflectionConfig.recordField(field, false), permission).get(instance);
 				}
 
 				public static <T> T field(@NotNull final Field field, @Nullable final Object instance){
@@ -117,7 +152,8 @@ public final class SneakyWrappers {
 
 				@SneakyThrows({NoSuchFieldException.class, IllegalAccessException.class})
 				public static void field(@NotNull final Class<?> clazz, @NotNull final String fieldName, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance, @Nullable final Object value) {
-					_Permission.modifyPermission(clazz.getDeclaredField(fieldName), permission).set(instance, value);
+					if (generatedSet(clazz, fieldName, permission, instance, value)) return;
+					ReflectionConfig.recordField(Members.field(clazz, fieldName, permission), true).set(instance, value);
 				}
 
 				public static void field(@NotNull final Class<?> clazz, @NotNull final String fieldName, @Nullable final Object instance, @Nullable final Object value) {
@@ -131,7 +167,9 @@ public final class SneakyWrappers {
 
 				@SneakyThrows({NoSuchFieldException.class, ClassNotFoundException.class, IllegalAccessException.class})
 				public static void field(@NotNull final String className, @NotNull final String fieldName, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance, @Nullable final Object value) {
-					_Permission.modifyPermission(Class.forName(className).getDeclaredField(fieldName), permission).set(instance, value);
+					final Class<?> clazz = ReflectionConfig.recordClass(Class.forName(className));
+					if (generatedSet(clazz, fieldName, permission, instance, value)) return;
+					ReflectionConfig.recordField(Members.field(clazz, fieldName, permission), true).set(instance, value);
 				}
 
 				public static void field(@NotNull final String className, @NotNull final String fieldName, @Nullable final Object instance, @Nullable final Object value) {
@@ -145,7 +183,8 @@ public final class SneakyWrappers {
 
 				@SneakyThrows(IllegalAccessException.class)
 				public static void field(@NotNull final Field field, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance, @Nullable final Object value) {
-					_Permission.modifyPermission(field, permission).set(instance, value);
+					if (generatedSet(field.getDeclaringClass(), field.getName(), permission, instance, value)) return;
+					_Permission.modifyPermission(ReflectionConfig.recordField(field, true), permission).set(instance, value);
 				}
 
 				public static void field(@NotNull final Field field, @Nullable final Object instance, @Nullable final Object value) {
@@ -164,7 +203,42 @@ public final class SneakyWrappers {
 
 		@SneakyThrows(ClassNotFoundException.class)
 		public static Class<?> getClass(@NotNull final String name) {
-			return Class.forName(name);
+			return ReflectionConfig.recordClass(Class.forName(name));
+		}
+
+		/** The most names {@link #findClass} remembers as missing. */
+		private static final int MAX_MISSING = 4096;
+
+		/** Names {@link #findClass} could not load, least recently asked for first. */
+		private static final Map<String, Boolean> missing = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+				return size() > MAX_MISSING;
+			}
+		});
+
+		/**
+		 * Like {@link #getClass}, but returns null instead of throwing if there is no such
+		 * class. The class is first loaded without being initialized, and names that
+		 * can't be loaded are remembered, so that each only throws internally once -
+		 * until {@link #forgetMissingClasses()} is called or too many others have
+		 * been looked up since.
+		 */
+		@Nullable
+		public static Class<?> findClass(@NotNull final String name) {
+			if (missing.get(name) != null) return null; // get, unlike containsKey, counts as an access
+			try {
+				Class.forName(name, false, Reflect.class.getClassLoader());
+			} catch (final ClassNotFoundException | LinkageError e) {
+				missing.put(name, Boolean.TRUE);
+				return null;
+			}
+			return getClass(name);
+		}
+
+		/** Forget the names {@link #findClass} could not load, for when they may have become loadable. */
+		public static void forgetMissingClasses() {
+			missing.clear();
 		}
 
 
@@ -173,7 +247,8 @@ public final class SneakyWrappers {
 
 			@SneakyThrows(NoSuchMethodException.class)
 			public static Method getDeclaredMethod(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
-				return _Permission.modifyPermission(Reflect.getClass(className).getDeclaredMethod(name, parameterTypes), permission);
+				MemberIndex.checkMethod(className, name, parameterTypes);
+				return _Permission.modifyPermission(ReflectionConfig.recordMethod(Reflect.getClass(className).getDeclaredMethod(name, parameterTypes)), permission);
 			}
 
 			public static Method getDeclaredMethod(@NotNull final String className, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
@@ -182,7 +257,8 @@ public final class SneakyWrappers {
 
 			@SneakyThrows(NoSuchFieldException.class)
 			public static Field getDeclaredField(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final String name) {
-				return _Permission.modifyPermission(Reflect.getClass(className).getDeclaredField(name), permission);
+				MemberIndex.checkField(className, name);
+				return _Permission.modifyPermission(ReflectionConfig.recordField(Reflect.getClass(className).getDeclaredField(name), false), permission);
 			}
 
 			public static Field getDeclaredField(@NotNull final String className, @NotNull final String name) {
@@ -191,13 +267,67 @@ public final class SneakyWrappers {
 
 			@SneakyThrows(NoSuchMethodException.class)
 			public static Constructor<?> getDeclaredConstructor(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... parameterTypes) {
-				return _Permission.modifyPermission(Reflect.getClass(className).getDeclaredConstructor(parameterTypes), permission);
+				MemberIndex.checkMethod(className, "<init>", parameterTypes);
+				return _Permission.modifyPermission(ReflectionConfig.recordMethod(Reflect.getClass(className).getDeclaredConstructor(parameterTypes)), permission);
 			}
 
 			public static Constructor<?> getDeclaredConstructor(@NotNull final String className, @NotNull final Class<?>... parameterTypes) {
 				return getDeclaredConstructor(className, 0, parameterTypes);
 			}
 
+			/** Like {@link #getDeclaredMethod}, but returns null instead of throwing if there is no such class or method. */
+			@Nullable
+			public static Method findDeclaredMethod(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+				final Class<?> clazz = findClass(className);
+				final Method method = clazz == null ? null : ByClass.findDeclaredMethod(clazz, name, parameterTypes);
+				return method == null ? null : _Permission.modifyPermission(method, permission);
+			}
+
+			@Nullable
+			public static Method findDeclaredMethod(@NotNull final String className, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+				return findDeclaredMethod(className, 0, name, parameterTypes);
+			}
+
+			/** Like {@link #getDeclaredField}, but returns null instead of throwing if there is no such class or field. */
+			@Nullable
+			public static Field findDeclaredField(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final String name) {
+				final Class<?> clazz = findClass(className);
+				final Field field = clazz == null ? null : ByClass.findDeclaredField(clazz, name);
+				return field == null ? null : _Permission.modifyPermission(field, permission);
+			}
+
+			@Nullable
+			public static Field findDeclaredField(@NotNull final String className, @NotNull final String name) {
+				return findDeclaredField(className, 0, name);
+			}
+
+			/** Like {@link #getDeclaredConstructor}, but returns null instead of throwing if there is no such class or constructor. */
+			@Nullable
+			public static Constructor<?> findDeclaredConstructor(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... parameterTypes) {
+				final Class<?> clazz = findClass(className);
+				final Constructor<?> constructor = clazz == null ? null : ByClass.findDeclaredConstructor(clazz, parameterTypes);
+				return constructor == null ? null : _Permission.modifyPermission(constructor, permission);
+			}
+
+			@Nullable
+			public static Constructor<?> findDeclaredConstructor(@NotNull final String className, @NotNull final Class<?>... parameterTypes) {
+				return findDeclaredConstructor(className, 0, parameterTypes);
+			}
+
+			/** The names of the declared fields, from the {@link MemberIndex} if it indexes the class. */
+			public static String[] getDeclaredFieldNames(@NotNull final String className) {
+				final MemberIndex index = MemberIndex.global();
+				final String[] names = index == null ? null : index.names(className, true);
+				return names != null ? names : Arrays.stream(Reflect.getClass(className).getDeclaredFields()).map(Field::getName).toArray(String[]::new);
+			}
+
+			/** The names of the declared methods, from the {@link MemberIndex} if it indexes the class. */
+			public static String[] getDeclaredMethodNames(@NotNull final String className) {
+				final MemberIndex index = MemberIndex.global();
+				final String[] names = index == null ? null : index.names(className, false);
+				return names != null ? names : Arrays.stream(Reflect.getClass(className).getDeclaredMethods()).map(Method::getName).toArray(String[]::new);
+			}
+
 		}
 
 		@NoArgsConstructor(access = PRIVATE)
@@ -205,17 +335,82 @@ public final class SneakyWrappers {
 
 			@SneakyThrows(NoSuchMethodException.class)
 			public static Method getDeclaredMethod(@NotNull final Class<?> clazz, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
-				return clazz.getDeclaredMethod(name, parameterTypes);
+				MemberIndex.checkMethod(clazz, name, parameterTypes);
+				return ReflectionConfig.recordMethod(clazz.getDeclaredMethod(name, parameterTypes));
 			}
 
 			@SneakyThrows(NoSuchFieldException.class)
 			public static Field getDeclaredField(@NotNull final Class<?> clazz, @NotNull final String name) {
-				return clazz.getDeclaredField(name);
+				MemberIndex.checkField(clazz, name);
+				return ReflectionConfig.recordField(clazz.getDeclaredField(name), false);
 			}
 
 			@SneakyThrows(NoSuchMethodException.class)
 			public static Constructor<?> getDeclaredConstructor(@NotNull final Class<?> clazz, @NotNull final Class<?>... parameterTypes) {
-				return clazz.getDeclaredConstructor(parameterTypes);
+				MemberIndex.checkMethod(clazz, "<init>", parameterTypes);
+				return ReflectionConfig.recordMethod(clazz.getDeclaredConstructor(parameterTypes));
+			}
+
+			/** Like {@link #getDeclaredMethod}, but returns null instead of throwing if there is no such method. */
+			@Nullable
+			public static Method findDeclaredMethod(@NotNull final Class<?> clazz, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+				return DeclaredMembers.of(clazz).hasMethod(name, parameterTypes) ? getDeclaredMethod(clazz, name, parameterTypes) : null;
+			}
+
+			/** Like {@link #getDeclaredField}, but returns null instead of throwing if there is no such field. */
+			@Nullable
+			public static Field findDeclaredField(@NotNull final Class<?> clazz, @NotNull final String name) {
+				return DeclaredMembers.of(clazz).hasField(name) ? getDeclaredField(clazz, name) : null;
+			}
+
+			/** Like {@link #getDeclaredConstructor}, but returns null instead of throwing if there is no such constructor. */
+			@Nullable
+			public static Constructor<?> findDeclaredConstructor(@NotNull final Class<?> clazz, @NotNull final Class<?>... parameterTypes) {
+				return DeclaredMembers.of(clazz).hasConstructor(parameterTypes) ? getDeclaredConstructor(clazz, parameterTypes) : null;
+			}
+
+
+			/**
+			 * The declared fields of a class with an annotation, from an index built once
+			 * per class. Like {@link Class#getDeclaredFields()}, every call returns fresh
+			 * copies of the fields, whose permissions can be changed without affecting
+			 * other callers.
+			 *
+			 * @return an immutable list of the annotated fields
+			 */
+			@NotNull
+			public static List<Field> getDeclaredFieldsAnnotatedWith(@NotNull final Class<?> clazz, @NotNull final Class<? extends Annotation> annotation) {
+				return DeclaredMembers.of(clazz).fieldsAnnotatedWith(annotation);
+			}
+
+			/** @see #getDeclaredFieldsAnnotatedWith */
+			@NotNull
+			public static List<Method> getDeclaredMethodsAnnotatedWith(@NotNull final Class<?> clazz, @NotNull final Class<? extends Annotation> annotation) {
+				return DeclaredMembers.of(clazz).methodsAnnotatedWith(annotation);
+			}
+
+			/** @see #getDeclaredFieldsAnnotatedWith */
+			@NotNull
+			public static List<Constructor<?>> getDeclaredConstructorsAnnotatedWith(@NotNull final Class<?> clazz, @NotNull final Class<? extends Annotation> annotation) {
+				return DeclaredMembers.of(clazz).constructorsAnnotatedWith(annotation);
+			}
+
+			/** @return the annotation on a declared field, or null if there is no such field or annotation */
+			@Nullable
+			public static <A extends Annotation> A getDeclaredFieldAnnotation(@NotNull final Class<?> clazz, @NotNull final String name, @NotNull final Class<A> annotation) {
+				return DeclaredMembers.of(clazz).fieldAnnotation(name, annotation);
+			}
+
+			/** @return the annotation on a declared method, or null if there is no such method or annotation */
+			@Nullable
+			public static <A extends Annotation> A getDeclaredMethodAnnotation(@NotNull final Class<?> clazz, @NotNull final Class<A> annotation, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+				return DeclaredMembers.of(clazz).methodAnnotation(name, parameterTypes, annotation);
+			}
+
+			/** @return the annotation on a declared constructor, or null if there is no such constructor or annotation */
+			@Nullable
+			public static <A extends Annotation> A getDeclaredConstructorAnnotation(@NotNull final Class<?> clazz, @NotNull final Class<A> annotation, @NotNull final Class<?>... parameterTypes) {
+				return DeclaredMembers.of(clazz).constructorAnnotation(parameterTypes, annotation);
 			}
 
 		}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static lombok.AccessLevel.PRIVATE;
+import static tech.napkin.reflectionhelper.UnsafeAccess.unsafe;
+
+/**
+ * Capture and restore every static field of a set of classes at once, so that
+ * tests which replace singletons or flip static flags can be isolated from each
+ * other in a single JVM instead of a fork per test class.
+ * <p>
+ * Fields are read and written straight through their static field base and offset,
+ * which also works for {@code static final} fields that reflection refuses to set
+ * even with {@link _Permission#overridePermission}. Classes are initialized before
+ * they are captured, so that their initial state is what gets restored. Keep in
+ * mind that compile-time constants are inlined by javac, and that the JIT may fold
+ * other static finals into code it has already compiled; restoring those changes
+ * what reflection sees, but not necessarily what that code sees.
+ * <p>
+ * Records and hidden classes don't expose their field offsets, so their static
+ * fields go through reflection instead, and their finals, which can't be
+ * restored, are not captured at all.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Statics {
+
+	private static final ClassValue<Plan> plans = new ClassValue<Plan>() {
+		@Override
+		protected Plan computeValue(final Class<?> type) {
+			return new Plan(type);
+		}
+	};
+
+
+	/**
+	 * Capture the current value of every static field declared by the classes.
+	 * Superclasses are not included unless given.
+	 *
+	 * @param classes the classes to capture
+	 * @return the captured state, to be restored later
+	 */
+	@NotNull
+	public static State capture(@NotNull final Class<?>... classes) {
+		return capture(Arrays.asList(classes));
+	}
+
+	/** @see #capture(Class[]) */
+	@NotNull
+	public static State capture(@NotNull final Collection<? extends Class<?>> classes) {
+		final List<Plan> captured = new ArrayList<>(classes.size());
+		for (final Class<?> clazz : classes) captured.add(plans.get(clazz));
+		return new State(captured.toArray(new Plan[0]));
+	}
+
+
+	/** The static fields of a set of classes, as they were when captured. */
+	public static final class State {
+
+		@NotNull private final Plan[] plans;
+		@NotNull private final long[][] primitives;
+		@NotNull private final Object[][] references;
+
+		private State(@NotNull final Plan[] plans) {
+			this.plans = plans;
+			primitives = new long[plans.length][];
+			references = new Object[plans.length][];
+			for (int i = 0; i < plans.length; i++) {
+				primitives[i] = new long[plans[i].fields.length];
+				references[i] = new Object[plans[i].fields.length];
+				plans[i].capture(primitives[i], references[i]);
+			}
+		}
+
+		/** The captured classes, in the order they were given. */
+		@NotNull
+		public List<Class<?>> classes() {
+			final List<Class<?>> classes = new ArrayList<>(plans.length);
+			for (final Plan plan : plans) classes.add(plan.type);
+			return Collections.unmodifiableList(classes);
+		}
+
+		/**
+		 * Put every captured static field back to its captured value. This should not
+		 * be called while other threads are using the classes.
+		 */
+		public void restore() {
+			for (int i = 0; i < plans.length; i++) {
+				plans[i].restore(primitives[i], references[i]);
+			}
+		}
+
+	}
+
+
+	/** The static fields of a class, with where to find them. */
+	private static final class Plan {
+
+		private static final int REFERENCE = 0, REFLECTIVE = -1;
+
+		@NotNull private final Class<?> type;
+		@NotNull private final Field[] fields;
+		@NotNull private final Object[] bases;
+		@NotNull private final long[] offsets;
+		/** The size in bytes of primitive fields, or {@link #REFERENCE} or {@link #REFLECTIVE}. */
+		@NotNull private final int[] sizes;
+
+		@SneakyThrows(ClassNotFoundException.class)
+		private Plan(@NotNull final Class<?> type) {
+			this.type = type;
+			if (!type.isPrimitive() && !type.isArray()) {
+				ClassInitializer.initialize(type);
+			}
+
+			final Field[] statics = Arrays.stream(type.getDeclaredFields()).filter(Modifiers.Is::Static).toArray(Field[]::new);
+			final Object[] bases = new Object[statics.length];
+			final long[] offsets = new long[statics.length];
+			final int[] sizes = new int[statics.length];
+			int count = 0;
+			for (final Field field : statics) {
+				try {
+					offsets[count] = unsafe.staticFieldOffset(field);
+					bases[count] = unsafe.staticFieldBase(field);
+					sizes[count] = field.getType().isPrimitive() ? Memory.sizeOf(field.getType()) : REFERENCE;
+				} catch (final UnsupportedOperationException e) {
+					if (Modifiers.Is.Final(field)) continue; // reflection can't set it back
+					_Permission.ensureAccessible(field);
+					sizes[count] = REFLECTIVE;
+				}
+				statics[count++] = ReflectionConfig.recordField(field, true);
+			}
+
+			this.fields = Arrays.copyOf(statics, count);
+			this.bases = Arrays.copyOf(bases, count);
+			this.offsets = Arrays.copyOf(offsets, count);
+			this.sizes = Arrays.copyOf(sizes, count);
+		}
+
+		@SneakyThrows(IllegalAccessException.class)
+		private void capture(@NotNull final long[] primitives, @NotNull final Object[] references) {
+			for (int i = 0; i < fields.length; i++) {
+				final Object base = bases[i];
+				final long offset = offsets[i];
+				switch (sizes[i]) {
+					case REFLECTIVE: references[i] = fields[i].get(null); break;
+					case REFERENCE: references[i] = unsafe.getObjectVolatile(base, offset); break;
+					case 1: primitives[i] = unsafe.getByteVolatile(base, offset); break;
+					case 2: primitives[i] = unsafe.getShortVolatile(base, offset); break;
+					case 4: primitives[i] = unsafe.getIntVolatile(base, offset); break;
+					case 8: primitives[i] = unsafe.getLongVolatile(base, offset); break;
+				}
+			}
+		}
+
+		@SneakyThrows(IllegalAccessException.class)
+		private void restore(@NotNull final long[] primitives, @NotNull final Object[] references) {
+			for (int i = 0; i < fields.length; i++) {
+				final Object base = bases[i];
+				final long offset = offsets[i];
+				switch (sizes[i]) {
+					case REFLECTIVE: fields[i].set(null, references[i]); break;
+					case REFERENCE: unsafe.putObjectVolatile(base, offset, references[i]); break;
+					case 1: unsafe.putByteVolatile(base, offset, (byte) primitives[i]); break;
+					case 2: unsafe.putShortVolatile(base, offset, (short) primitives[i]); break;
+					case 4: unsafe.putIntVolatile(base, offset, (int) primitives[i]); break;
+					case 8: unsafe.putLongVolatile(base, offset, primitives[i]); break;
+				}
+			}
+		}
+
+	}
+
+}
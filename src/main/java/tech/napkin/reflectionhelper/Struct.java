@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A fixed layout of the primitive instance fields of a class as a struct, for
+ * keeping large arrays of small value objects in a {@link ByteBuffer} - usually a
+ * direct one, off the heap and out of the way of the garbage collector - and
+ * turning them back into objects when needed. A {@code MemorySegment} can be used
+ * through its {@code asByteBuffer()} view.
+ * <p>
+ * The fields are laid out in the order the JVM lays them out on the heap (see
+ * {@link Memory#layout(Class)}), each aligned to its own size, and the struct is
+ * padded to the alignment of its largest field so that consecutive slots stay
+ * aligned. Reference fields are not part of the struct, and
+ * are left {@code null} in objects read back with {@link #read(ByteBuffer, int)}.
+ * <p>
+ * The byte order of the buffer is respected. Structs are cached per class and are
+ * thread safe; buffers are only ever accessed by absolute index.
+ *
+ * @param <T> the class of the mirrored objects
+ * @noinspection unused
+ */
+public final class Struct<T> {
+
+	private static final ClassValue<Struct<?>> structs = new ClassValue<Struct<?>>() {
+		@Override
+		protected Struct<?> computeValue(final Class<?> type) {
+			return new Struct<>(type);
+		}
+	};
+
+	/* field kinds */
+	private static final int BOOLEAN = 0, BYTE = 1, CHAR = 2, SHORT = 3, INT = 4, FLOAT = 5, LONG = 6, DOUBLE = 7;
+
+	@NotNull private final Class<T> type;
+	@NotNull private final FieldPlan plan;
+
+	/** The size of a slot in bytes, including its trailing padding. */
+	public final int size;
+
+	@NotNull private final List<String> names;
+	@NotNull private final int[] offsets;
+	@NotNull private final int[] kinds;
+	/** Typed {@code (Object)<field type>}. */
+	@NotNull private final MethodHandle[] getters;
+	/** Typed {@code (Object, <field type>)void}, {@code null} where the field cannot be written. */
+	@NotNull private final MethodHandle[] setters;
+
+	@SuppressWarnings("unchecked")
+	private Struct(@NotNull final Class<?> type) {
+		this.type = (Class<T>) type;
+		plan = FieldPlan.of(type);
+
+		final List<Integer> indices = new ArrayList<>();
+		for (final Memory.Slot slot : Memory.layout(type).slots) {
+			if (slot.field.getType().isPrimitive()) indices.add(index(slot.field));
+		}
+
+		final int count = indices.size();
+		final String[] names = new String[count];
+		offsets = new int[count];
+		kinds = new int[count];
+		getters = new MethodHandle[count];
+		setters = new MethodHandle[count];
+
+		int offset = 0, alignment = 1;
+		for (int i = 0; i < count; i++) {
+			final int index = indices.get(i);
+			final Class<?> fieldType = plan.types[index];
+			final int fieldSize = Memory.sizeOf(fieldType);
+			offset = (offset + fieldSize - 1) / fieldSize * fieldSize;
+			alignment = Math.max(alignment, fieldSize);
+
+			names[i] = plan.names[index];
+			offsets[i] = offset;
+			kinds[i] = Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class, float.class, long.class, double.class).indexOf(fieldType);
+			getters[i] = plan.getters[index];
+			setters[i] = plan.setters[index];
+			offset += fieldSize;
+		}
+
+		this.names = Collections.unmodifiableList(Arrays.asList(names));
+		size = (offset + alignment - 1) / alignment * alignment;
+	}
+
+	/**
+	 * Get the struct layout of a class.
+	 *
+	 * @param type the class of the mirrored objects
+	 * @return the cached layout
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public static <T> Struct<T> of(@NotNull final Class<T> type) {
+		return (Struct<T>) structs.get(type);
+	}
+
+	/** The index of the field in the {@link FieldPlan}, which made every field accessible. */
+	private int index(@NotNull final Field field) {
+		for (int i = 0; i < plan.fields.length; i++) {
+			if (plan.fields[i].equals(field)) return i;
+		}
+		throw new IllegalStateException(field + " is not an instance field of " + type.getName());
+	}
+
+
+	/** The names of the mirrored fields, in the order they are laid out. */
+	@NotNull
+	public List<String> fieldNames() {
+		return names;
+	}
+
+	/** The offset of each mirrored field within a slot, in the order of {@link #fieldNames()}. */
+	@NotNull
+	public int[] offsets() {
+		return offsets.clone();
+	}
+
+	/**
+	 * Allocate a direct buffer for a number of slots, in the native byte order.
+	 *
+	 * @param count the number of slots
+	 * @return the new buffer
+	 */
+	@NotNull
+	public ByteBuffer allocate(final int count) {
+		return ByteBuffer.allocateDirect(Math.multiplyExact(count, size)).order(ByteOrder.nativeOrder());
+	}
+
+
+	/**
+	 * Copy the primitive fields of an object into a slot.
+	 *
+	 * @param instance the object to copy from
+	 * @param buffer the buffer to copy into
+	 * @param index the index of the slot, not of a byte
+	 * @throws IndexOutOfBoundsException if the slot does not fit in the buffer
+	 */
+	@SneakyThrows
+	public void write(@NotNull final T instance, @NotNull final ByteBuffer buffer, final int index) {
+		final int base = Math.multiplyExact(index, size);
+		for (int i = 0; i < kinds.length; i++) {
+			final MethodHandle getter = getters[i];
+			final int at = base + offsets[i];
+			switch (kinds[i]) {
+				case BOOLEAN: buffer.put(at, (boolean) getter.invokeExact((Object) instance) ? (byte) 1 : 0); break;
+				case BYTE: buffer.put(at, (byte) getter.invokeExact((Object) instance)); break;
+				case CHAR: buffer.putChar(at, (char) getter.invokeExact((Object) instance)); break;
+				case SHORT: buffer.putShort(at, (short) getter.invokeExact((Object) instance)); break;
+				case INT: buffer.putInt(at, (int) getter.invokeExact((Object) instance)); break;
+				case FLOAT: buffer.putFloat(at, (float) getter.invokeExact((Object) instance)); break;
+				case LONG: buffer.putLong(at, (long) getter.invokeExact((Object) instance)); break;
+				case DOUBLE: buffer.putDouble(at, (double) getter.invokeExact((Object) instance)); break;
+			}
+		}
+	}
+
+	/**
+	 * Copy a slot into the primitive fields of an existing object.
+	 *
+	 * @param buffer the buffer to copy from
+	 * @param index the index of the slot, not of a byte
+	 * @param into the object to copy into
+	 * @return the passed object
+	 * @throws IllegalAccessException (sneaky) if a mirrored field can't be written
+	 * @throws IndexOutOfBoundsException if the slot does not fit in the buffer
+	 */
+	@NotNull
+	@SneakyThrows
+	public T read(@NotNull final ByteBuffer buffer, final int index, @NotNull final T into) {
+		final int base = Math.multiplyExact(index, size);
+		for (int i = 0; i < kinds.length; i++) {
+			final MethodHandle setter = setter(i);
+			final int at = base + offsets[i];
+			switch (kinds[i]) {
+				case BOOLEAN: setter.invokeExact((Object) into, buffer.get(at) != 0); break;
+				case BYTE: setter.invokeExact((Object) into, buffer.get(at)); break;
+				case CHAR: setter.invokeExact((Object) into, buffer.getChar(at)); break;
+				case SHORT: setter.invokeExact((Object) into, buffer.getShort(at)); break;
+				case INT: setter.invokeExact((Object) into, buffer.getInt(at)); break;
+				case FLOAT: setter.invokeExact((Object) into, buffer.getFloat(at)); break;
+				case LONG: setter.invokeExact((Object) into, buffer.getLong(at)); break;
+				case DOUBLE: setter.invokeExact((Object) into, buffer.getDouble(at)); break;
+			}
+		}
+		return into;
+	}
+
+	/**
+	 * Materialize a slot as a new object, created without running any of its
+	 * constructors (see {@link Construction#allocate(Class)}).
+	 *
+	 * @param buffer the buffer to copy from
+	 * @param index the index of the slot, not of a byte
+	 * @return the new object
+	 */
+	@NotNull
+	@SneakyThrows(InstantiationException.class)
+	public T read(@NotNull final ByteBuffer buffer, final int index) {
+		return read(buffer, index, Construction.allocate(type));
+	}
+
+
+	/**
+	 * Copy an array of objects into consecutive slots.
+	 *
+	 * @param instances the objects, none of which may be {@code null}
+	 * @param buffer the buffer to copy into
+	 * @param index the index of the slot of the first object
+	 */
+	public void writeAll(@NotNull final T[] instances, @NotNull final ByteBuffer buffer, final int index) {
+		for (int i = 0; i < instances.length; i++) {
+			write(instances[i], buffer, index + i);
+		}
+	}
+
+	/**
+	 * Materialize consecutive slots as new objects.
+	 *
+	 * @param buffer the buffer to copy from
+	 * @param index the index of the first slot
+	 * @param count the number of slots
+	 * @return a new array of the objects
+	 */
+	@NotNull
+	@SuppressWarnings("unchecked")
+	public T[] readAll(@NotNull final ByteBuffer buffer, final int index, final int count) {
+		final T[] instances = (T[]) Array.newInstance(type, count);
+		for (int i = 0; i < count; i++) {
+			instances[i] = read(buffer, index + i);
+		}
+		return instances;
+	}
+
+	/**
+	 * Copy consecutive slots into the objects of an array, so that the same objects
+	 * can be reused as views over the buffer.
+	 *
+	 * @param buffer the buffer to copy from
+	 * @param index the index of the slot of the first object
+	 * @param into the objects to copy into, none of which may be {@code null}
+	 * @return the passed array
+	 */
+	@NotNull
+	public T[] readAll(@NotNull final ByteBuffer buffer, final int index, @NotNull final T[] into) {
+		for (int i = 0; i < into.length; i++) {
+			read(buffer, index + i, into[i]);
+		}
+		return into;
+	}
+
+	@NotNull
+	@SneakyThrows(IllegalAccessException.class)
+	private MethodHandle setter(final int i) {
+		if (setters[i] == null) {
+			throw new IllegalAccessException("Cannot set final field " + type.getName() + '.' + names.get(i));
+		}
+		return setters[i];
+	}
+
+	@Override
+	public String toString() {
+		return "Struct of " + type.getName() + ' ' + names + " (" + size + " bytes)";
+	}
+
+}
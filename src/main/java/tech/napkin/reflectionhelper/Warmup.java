@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Concurrent pre-resolution of the classes and members an application is going to
+ * access through {@link SneakyWrappers} and {@link Construction}, so that the
+ * first real accesses find everything cached.
+ * <p>
+ * Warming a target loads its class without initializing it, looks up its
+ * generated {@link Accessors.Accessor}, and resolves the member into the caches
+ * the real lookups go through: fields with their permission applied into the
+ * cache used by {@link SneakyWrappers.Objects}, methods and constructors into the
+ * declared member table behind the {@code find*} methods of
+ * {@link SneakyWrappers.Reflect}, along with the {@link MemberIndex} check of the
+ * class. Type targets build the cached field plans used by {@link Mapping} and
+ * friends.
+ * <p>
+ * Targets are resolved in parallel on the given {@link Executor}, by default the
+ * common {@link ForkJoinPool}. Classes are never initialized in parallel, as
+ * static initializers that depend on each other could deadlock: when warming with
+ * iterations, the classes of the targets are initialized one after the other on
+ * the calling thread first.
+ *
+ * @noinspection unused
+ */
+@NoArgsConstructor(access = PRIVATE)
+public final class Warmup {
+
+	/** A class or member to be warmed. */
+	public static final class Target {
+
+		private enum Kind { TYPE, FIELD, METHOD, CONSTRUCTOR }
+
+		@NotNull private final Kind kind;
+		@Nullable private final Class<?> clazz;
+		@NotNull private final String className;
+		@Nullable private final String name;
+		@NotNull private final Class<?>[] parameterTypes;
+		private final int permission;
+		@Nullable private final Object instance;
+
+		private Target(@NotNull final Kind kind, @Nullable final Class<?> clazz, @NotNull final String className, @Nullable final String name,
+		               @NotNull final Class<?>[] parameterTypes, final int permission, @Nullable final Object instance) {
+			this.kind = kind;
+			this.clazz = clazz;
+			this.className = className;
+			this.name = name;
+			this.parameterTypes = parameterTypes;
+			this.permission = permission;
+			this.instance = instance;
+		}
+
+		@NotNull
+		public static Target type(@NotNull final String className) {
+			return new Target(Kind.TYPE, null, className, null, new Class<?>[0], 0, null);
+		}
+
+		@NotNull
+		public static Target type(@NotNull final Class<?> clazz) {
+			return new Target(Kind.TYPE, clazz, clazz.getName(), null, new Class<?>[0], 0, null);
+		}
+
+		@NotNull
+		public static Target field(@NotNull final String className, @NotNull final String name, @Range(from = -1, to = 2) final int permission) {
+			return new Target(Kind.FIELD, null, className, name, new Class<?>[0], permission, null);
+		}
+
+		@NotNull
+		public static Target field(@NotNull final Class<?> clazz, @NotNull final String name, @Range(from = -1, to = 2) final int permission) {
+			return new Target(Kind.FIELD, clazz, clazz.getName(), name, new Class<?>[0], permission, null);
+		}
+
+		/**
+		 * A field that is also read from the given instance when warming with
+		 * iterations. Static fields are read even without an instance.
+		 */
+		@NotNull
+		public static Target field(@NotNull final Class<?> clazz, @NotNull final String name, @Range(from = -1, to = 2) final int permission, @Nullable final Object instance) {
+			return new Target(Kind.FIELD, clazz, clazz.getName(), name, new Class<?>[0], permission, instance);
+		}
+
+		@NotNull
+		public static Target method(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+			return new Target(Kind.METHOD, null, className, name, parameterTypes, permission, null);
+		}
+
+		@NotNull
+		public static Target method(@NotNull final Class<?> clazz, @Range(from = -1, to = 2) final int permission, @NotNull final String name, @NotNull final Class<?>... parameterTypes) {
+			return new Target(Kind.METHOD, clazz, clazz.getName(), name, parameterTypes, permission, null);
+		}
+
+		@NotNull
+		public static Target constructor(@NotNull final String className, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... parameterTypes) {
+			return new Target(Kind.CONSTRUCTOR, null, className, null, parameterTypes, permission, null);
+		}
+
+		@NotNull
+		public static Target constructor(@NotNull final Class<?> clazz, @Range(from = -1, to = 2) final int permission, @NotNull final Class<?>... parameterTypes) {
+			return new Target(Kind.CONSTRUCTOR, clazz, clazz.getName(), null, parameterTypes, permission, null);
+		}
+
+		/** Load the class without initializing it and resolve the member into the caches. */
+		@NotNull
+		@SneakyThrows(ClassNotFoundException.class)
+		private Class<?> resolve() {
+			final Class<?> type = clazz != null ? clazz : ReflectionConfig.recordClass(Class.forName(className, false, Warmup.class.getClassLoader()));
+			Accessors.of(type);
+			if (kind == Kind.TYPE) {
+				FieldPlan.of(type);
+			} else {
+				lookUp(type);
+			}
+			return type;
+		}
+
+		/** Exercise the access path of the target, whose class is initialized. */
+		private void exercise(@NotNull final Class<?> type, final int iterations) {
+			if (kind == Kind.FIELD && (instance != null || Modifiers.Is.Static((Field) lookUp(type)))) {
+				for (int i = 0; i < iterations; i++) {
+					SneakyWrappers.Objects.Get.ByClass.field(type, name, permission, instance);
+				}
+			} else if (kind != Kind.TYPE && kind != Kind.FIELD) {
+				for (int i = 0; i < iterations; i++) lookUp(type);
+			}
+		}
+
+		@NotNull
+		@SneakyThrows({NoSuchFieldException.class, NoSuchMethodException.class})
+		private AccessibleObject lookUp(@NotNull final Class<?> type) {
+			final AccessibleObject member;
+			switch (kind) {
+				case FIELD:
+					return ReflectionConfig.recordField(Members.field(type, name, permission), false);
+				case METHOD:
+					member = SneakyWrappers.Reflect.ByClass.findDeclaredMethod(type, name, parameterTypes);
+					if (member == null) throw new NoSuchMethodException(toString());
+					break;
+				default:
+					member = SneakyWrappers.Reflect.ByClass.findDeclaredConstructor(type, parameterTypes);
+					if (member == null) throw new NoSuchMethodException(toString());
+			}
+			return _Permission.modifyPermission(member, permission);
+		}
+
+		@Override
+		public String toString() {
+			switch (kind) {
+				case TYPE:   return className;
+				case FIELD:  return className + '.' + name;
+				case METHOD: return className + '.' + name + Arrays.toString(parameterTypes);
+				default:     return className + ".<init>" + Arrays.toString(parameterTypes);
+			}
+		}
+
+	}
+
+
+	/**
+	 * Warm the targets in parallel on the common {@link ForkJoinPool}, without any
+	 * warm-up invocations.
+	 *
+	 * @param targets the classes and members to be warmed
+	 * @return the targets that failed, mapped to what they threw
+	 */
+	@NotNull
+	public static Map<Target, Throwable> warm(@NotNull final Collection<Target> targets) {
+		return warm(targets, 0, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Warm the targets in parallel on the given executor, blocking until every one is
+	 * done. A failing target does not stop the others.
+	 * <p>
+	 * With iterations, the classes of the targets are then initialized serially, and
+	 * the access path of every target is exercised that many times in parallel, so
+	 * that it is compiled before the first real access: fields are read through
+	 * {@link SneakyWrappers.Objects.Get.ByClass} when there is something to read them
+	 * from, and methods and constructors are looked up again. Methods and
+	 * constructors are never invoked, as that could have side effects.
+	 *
+	 * @param targets the classes and members to be warmed
+	 * @param iterations how many times to exercise the access path of every target
+	 * @param executor the executor to warm on
+	 * @return the targets that failed, mapped to what they threw
+	 */
+	@NotNull
+	public static Map<Target, Throwable> warm(@NotNull final Collection<Target> targets, @Range(from = 0, to = Integer.MAX_VALUE) final int iterations, @NotNull final Executor executor) {
+		final Map<Target, Throwable> failures = new ConcurrentHashMap<>();
+		final Map<Target, Class<?>> resolved = new ConcurrentHashMap<>();
+		inParallel(targets, executor, failures, target -> resolved.put(target, target.resolve()));
+		if (iterations == 0) return failures;
+
+		for (final Target target : targets) {
+			final Class<?> type = resolved.get(target);
+			if (type == null) continue;
+			try {
+				Class.forName(type.getName(), true, type.getClassLoader());
+			} catch (final Throwable t) {
+				resolved.remove(target);
+				failures.put(target, t);
+			}
+		}
+
+		inParallel(resolved.keySet(), executor, failures, target -> target.exercise(resolved.get(target), iterations));
+		return failures;
+	}
+
+	private static void inParallel(@NotNull final Collection<Target> targets, @NotNull final Executor executor, @NotNull final Map<Target, Throwable> failures, @NotNull final Consumer<Target> action) {
+		CompletableFuture.allOf(targets.stream()
+			.map(target -> CompletableFuture.runAsync(() -> {
+				try {
+					action.accept(target);
+				} catch (final Throwable t) {
+					failures.put(target, t);
+				}
+			}, executor))
+			.toArray(CompletableFuture[]::new)).join();
+	}
+
+}
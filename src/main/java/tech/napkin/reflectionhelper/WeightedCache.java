@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A concurrent cache bounded by the memory its entries take up rather than by how
+ * many there are, for values whose sizes vary by orders of magnitude. Entries are
+ * weighed by {@link Memory} when they are put: either shallowly, which only reads
+ * the cached layouts of the key and value classes, or deeply, which walks
+ * everything the key and value reference, counting shared objects in every entry
+ * that reaches them. The cache's own bookkeeping is not counted.
+ * <p>
+ * Keys are spread over a number of segments by hash, each holding an equal share
+ * of the budget and evicting its least recently used entries when over it, so
+ * threads working on different segments never contend. An entry heavier than a
+ * segment's share is not cached at all. Weighing happens outside of any lock, and
+ * so does the mapping function of {@link #computeIfAbsent(Object, Function)},
+ * which may therefore run more than once for a key.
+ * <p>
+ * {@code null} keys and values are not allowed.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @noinspection unused
+ */
+public final class WeightedCache<K, V> {
+
+	@NotNull private final ToLongBiFunction<? super K, ? super V> weigher;
+	@NotNull private final Segment<K, V>[] segments;
+	private final long maxWeight;
+
+	@NotNull private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder(), evictedWeight = new LongAdder();
+
+	/**
+	 * A cache weighing its entries with {@link Memory}, with a segment per available
+	 * processor. Since every segment gets an equal share of the budget, an entry
+	 * heavier than {@code maxWeight} divided by that many segments, rounded up to a
+	 * power of two, is never cached; use
+	 * {@link #WeightedCache(long, boolean, int)} for fewer, larger segments.
+	 *
+	 * @param maxWeight the budget in bytes
+	 * @param deep whether to weigh everything the keys and values reference, rather
+	 *             than only the objects themselves
+	 */
+	public WeightedCache(@Range(from = 0, to = Long.MAX_VALUE) final long maxWeight, final boolean deep) {
+		this(maxWeight, deep, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * A cache weighing its entries with {@link Memory}.
+	 *
+	 * @param maxWeight the budget in bytes
+	 * @param deep whether to weigh everything the keys and values reference, rather
+	 *             than only the objects themselves
+	 * @param concurrency the number of threads expected to use the cache at once, as
+	 *                    for {@link #WeightedCache(long, ToLongBiFunction, int)}
+	 */
+	public WeightedCache(@Range(from = 0, to = Long.MAX_VALUE) final long maxWeight, final boolean deep, @Range(from = 1, to = 1 << 16) final int concurrency) {
+		this(maxWeight, deep ? WeightedCache::deepWeight : WeightedCache::shallowWeight, concurrency);
+	}
+
+	/**
+	 * @param maxWeight the budget, in the unit of the weigher
+	 * @param weigher the weight of an entry, which must not be negative
+	 * @param concurrency the number of threads expected to use the cache at once,
+	 *                    rounded up to a power of two for the number of segments;
+	 *                    entries heavier than {@code maxWeight} divided by that are
+	 *                    never cached
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public WeightedCache(@Range(from = 0, to = Long.MAX_VALUE) final long maxWeight, @NotNull final ToLongBiFunction<? super K, ? super V> weigher, @Range(from = 1, to = 1 << 16) final int concurrency) {
+		if (maxWeight < 0) throw new IllegalArgumentException("Negative weight: " + maxWeight);
+		if (concurrency < 1 || concurrency > 1 << 16) throw new IllegalArgumentException("Concurrency out of range: " + concurrency);
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+
+		final int count = concurrency == 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+		segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment<>(maxWeight / count);
+		}
+	}
+
+	/** The size of the key and value themselves, in bytes. */
+	public static long shallowWeight(@NotNull final Object key, @NotNull final Object value) {
+		return (Memory.shallowSize(key) + Memory.shallowSize(value)) / 8;
+	}
+
+	/** The size of the key and value and of everything they reference, in bytes. */
+	public static long deepWeight(@NotNull final Object key, @NotNull final Object value) {
+		return (Memory.deepSize(key) + Memory.deepSize(value)) / 8;
+	}
+
+
+	/** @return the cached value, or {@code null} if there is none */
+	@Nullable
+	public V get(@NotNull final K key) {
+		final Segment<K, V> segment = segment(key);
+		final Entry<V> entry;
+		synchronized (segment) {
+			entry = segment.map.get(key);
+		}
+		(entry == null ? misses : hits).increment();
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Cache a value, evicting the least recently used entries of its segment until it
+	 * fits. A value too heavy to ever fit is not cached, and removes the previous one.
+	 *
+	 * @return the previously cached value, or {@code null} if there was none
+	 */
+	@Nullable
+	public V put(@NotNull final K key, @NotNull final V value) {
+		final Entry<V> entry = new Entry<>(value, weigh(key, value));
+		final Segment<K, V> segment = segment(key);
+		final Entry<V> previous;
+		synchronized (segment) {
+			previous = entry.weight > segment.maxWeight ? segment.map.remove(key) : segment.map.put(key, entry);
+			if (previous != null) segment.weight -= previous.weight;
+			if (entry.weight <= segment.maxWeight) {
+				segment.weight += entry.weight;
+				evict(segment);
+			}
+		}
+		return previous == null ? null : previous.value;
+	}
+
+	/**
+	 * Get the cached value, or compute and cache one if there is none. A
+	 * {@code null} result is not cached.
+	 */
+	@Nullable
+	public V computeIfAbsent(@NotNull final K key, @NotNull final Function<? super K, ? extends V> mapping) {
+		final V cached = get(key);
+		if (cached != null) return cached;
+
+		final V value = mapping.apply(key);
+		if (value == null) return null;
+		final Entry<V> entry = new Entry<>(value, weigh(key, value));
+		final Segment<K, V> segment = segment(key);
+		synchronized (segment) {
+			final Entry<V> raced = segment.map.get(key);
+			if (raced != null) return raced.value;
+			if (entry.weight <= segment.maxWeight) {
+				segment.map.put(key, entry);
+				segment.weight += entry.weight;
+				evict(segment);
+			}
+		}
+		return value;
+	}
+
+	/** @return the removed value, or {@code null} if there was none */
+	@Nullable
+	public V remove(@NotNull final K key) {
+		final Segment<K, V> segment = segment(key);
+		final Entry<V> removed;
+		synchronized (segment) {
+			removed = segment.map.remove(key);
+			if (removed != null) segment.weight -= removed.weight;
+		}
+		return removed == null ? null : removed.value;
+	}
+
+	/** Remove every entry, without counting them as evicted. */
+	public void clear() {
+		for (final Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.map.clear();
+				segment.weight = 0;
+			}
+		}
+	}
+
+	/** The number of cached entries. */
+	public int size() {
+		int size = 0;
+		for (final Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.map.size();
+			}
+		}
+		return size;
+	}
+
+	/** The total weight of the cached entries. */
+	public long weight() {
+		long weight = 0;
+		for (final Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+			}
+		}
+		return weight;
+	}
+
+	/** The budget of the cache, shared equally between its segments. */
+	public long maxWeight() {
+		return maxWeight;
+	}
+
+
+	/** The number of lookups that found a value. */
+	public long hits() {
+		return hits.sum();
+	}
+
+	/** The number of lookups that found no value. */
+	public long misses() {
+		return misses.sum();
+	}
+
+	/** The fraction of lookups that found a value, or 1 if there were none. */
+	public double hitRate() {
+		final long hits = hits(), total = hits + misses();
+		return total == 0 ? 1 : (double) hits / total;
+	}
+
+	/** The number of entries evicted to stay within the budget. */
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	/** The total weight of the entries evicted to stay within the budget. */
+	public long evictedWeight() {
+		return evictedWeight.sum();
+	}
+
+	/** Reset the statistics. */
+	public void resetStats() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+		evictedWeight.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "WeightedCache[size=" + size() + ", weight=" + weight() + '/' + maxWeight + ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + ']';
+	}
+
+
+	private long weigh(@NotNull final K key, @NotNull final V value) {
+		final long weight = weigher.applyAsLong(key, value);
+		if (weight < 0) throw new IllegalArgumentException("Negative weight " + weight + " for " + key);
+		return weight;
+	}
+
+	@NotNull
+	private Segment<K, V> segment(@NotNull final Object key) {
+		final int hash = key.hashCode();
+		return segments[(hash ^ hash >>> 16) & segments.length - 1];
+	}
+
+	/** Evict the least recently used entries of a segment until it is within its budget. Called holding its lock. */
+	private void evict(@NotNull final Segment<K, V> segment) {
+		final Iterator<Entry<V>> iterator = segment.map.values().iterator();
+		while (segment.weight > segment.maxWeight && iterator.hasNext()) {
+			final Entry<V> eldest = iterator.next();
+			iterator.remove();
+			segment.weight -= eldest.weight;
+			evictions.increment();
+			evictedWeight.add(eldest.weight);
+		}
+	}
+
+	private static final class Segment<K, V> {
+
+		/** In access order, eldest first. */
+		@NotNull final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+		final long maxWeight;
+		long weight;
+
+		Segment(final long maxWeight) {
+			this.maxWeight = maxWeight;
+		}
+
+	}
+
+	private static final class Entry<V> {
+
+		@NotNull final V value;
+		final long weight;
+
+		Entry(@NotNull final V value, final long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+
+	}
+
+}
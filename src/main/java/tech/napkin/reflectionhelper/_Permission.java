@@ -28,15 +28,12 @@
 package tech.napkin.reflectionhelper;
 
 import lombok.NoArgsConstructor;
-import lombok.SneakyThrows;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
 
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.InaccessibleObjectException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 import static lombok.AccessLevel.PRIVATE;
 
@@ -45,9 +42,8 @@ import static lombok.AccessLevel.PRIVATE;
  * overriding permission and sanity checks thrown by
  * {@link AccessibleObject#setAccessible(boolean)}.
  * <p>
- * Do note that utilizing this class will produce an illegal reflective access
- * warning printed to {@link System#err}, and may not work in future releases
- * because of this.
+ * Do note that up to Java 15, utilizing this class will produce an illegal
+ * reflective access warning printed to {@link System#err}.
  *
  * @noinspection unused
  */
@@ -63,7 +59,7 @@ public final class _Permission {
 		UNCHANGED (0),
 		/** Use {@link AccessibleObject#setAccessible(boolean)} to set the accessibility. */
 		SET       (1),
-		/** Reflectively call AccessibleObject#setAccessible0(boolean) to override checks. */
+		/** Override the checks of {@link AccessibleObject#setAccessible(boolean)}, see {@link #overridePermission(AccessibleObject)}. */
 		OVERRIDE  (2);
 
 
@@ -75,33 +71,24 @@ public final class _Permission {
 	}
 
 
-	/** The {@code AccessibleObject#setAccessible0(boolean)} method, used for overriding permission. */
-	@NotNull private static final Method setAccessible0 = SneakyWrappers.Reflect.ByClass.getDeclaredMethod(AccessibleObject.class, "setAccessible0", boolean.class);
-
 	/** Use this variable to determine if you can use forced overriding. */
 	public static final boolean canOverride = canOverride();
 
 
-//	@NotNull
-//	@SneakyThrows(NoSuchMethodException.class)
-//	private static Method obtainSetAccessible0() {
-//		return AccessibleObject.class.getDeclaredMethod("setAccessible0", boolean.class);
-//	}
-
 	private static boolean canOverride() {
-		try {
-			setAccessible0.setAccessible(true);
-			return true;
-		} catch (final SecurityException | InaccessibleObjectException e) {
-			System.err.println("Cannot use setAccessible0 - permission overriding will not work.");
-			return false;
+		if (!AccessOverride.available) {
+			System.err.println("Cannot override access checks - permission overriding will not work.");
 		}
+		return AccessOverride.available;
 	}
 
 
 	/**
-	 * Reflectively sets access permissions to {@code true} for the given
-	 * {@link AccessibleObject}.
+	 * Sets access permissions to {@code true} for the given {@link AccessibleObject},
+	 * bypassing the checks of {@link AccessibleObject#setAccessible(boolean)}. Up to
+	 * Java 15 this calls {@code AccessibleObject#setAccessible0(boolean)}
+	 * reflectively; from Java 16 on, where that is no longer possible, it writes the
+	 * object's override flag directly.
 	 *
 	 * @param object any {@link AccessibleObject}
 	 * @return the passed {@link AccessibleObject} to allow for method chaining
@@ -109,12 +96,9 @@ public final class _Permission {
 	 */
 	@NotNull
 	@Contract("_ -> param1")
-	@SneakyThrows(InvocationTargetException.class)
 	public static <T extends AccessibleObject> T overridePermission(@NotNull final T object) {
-		try {
-			setAccessible0.invoke(object, true);
-		} catch (final IllegalAccessException e) {
-			throw new RuntimeException("Do not have permission to override. You should have checked the canOverride method.", e);
+		if (!AccessOverride.override(object)) {
+			throw new RuntimeException("Do not have permission to override. You should have checked the canOverride method.");
 		}
 		return object;
 	}
@@ -139,4 +123,27 @@ public final class _Permission {
 		return object;
 	}
 
+	/**
+	 * Make a given {@link AccessibleObject} accessible, using
+	 * {@link AccessibleObject#setAccessible(boolean)} where that is allowed and
+	 * falling back to {@link #overridePermission(AccessibleObject)} when it is
+	 * refused and overriding is possible.
+	 *
+	 * @param object any {@link AccessibleObject}
+	 * @param <T> the type of the object to be made accessible
+	 * @return the passed {@link AccessibleObject} to allow for method chaining
+	 * @throws InaccessibleObjectException if access is refused and overriding is not possible
+	 */
+	@NotNull
+	@Contract("_ -> param1")
+	public static <T extends AccessibleObject> T ensureAccessible(@NotNull final T object) {
+		try {
+			object.setAccessible(true);
+		} catch (final SecurityException | InaccessibleObjectException e) {
+			if (!canOverride) throw e;
+			overridePermission(object);
+		}
+		return object;
+	}
+
 }
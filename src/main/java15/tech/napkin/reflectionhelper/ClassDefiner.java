@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandles;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Defines the classes the library generates as hidden classes, which can be
+ * unloaded once unreachable and whose final fields the JIT trusts as constants.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class ClassDefiner {
+
+	/** @return whether classes can be defined with the lookup */
+	static boolean canDefine(@NotNull final MethodHandles.Lookup lookup) {
+		return lookup.hasFullPrivilegeAccess();
+	}
+
+	/**
+	 * @param lookup a lookup with full privileges, in the package of the class
+	 * @param bytes the class file
+	 * @return the defined class
+	 * @throws IllegalArgumentException if the lookup lacks full privileges, as one
+	 *         opened on a class of another module does
+	 */
+	@NotNull
+	static Class<?> define(@NotNull final MethodHandles.Lookup lookup, @NotNull final byte[] bytes) throws IllegalAccessException {
+		if (!canDefine(lookup)) {
+			throw new IllegalArgumentException("Cannot define a hidden class in " + lookup.lookupClass().getPackageName() + ": " + lookup
+				+ " lacks full privileges - is the package open to " + ClassDefiner.class.getModule() + '?');
+		}
+		return lookup.defineHiddenClass(bytes, true).lookupClass();
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import lombok.NoArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Sets the override flag of an {@link AccessibleObject} without the checks of
+ * {@link AccessibleObject#setAccessible(boolean)}, for {@link _Permission}.
+ * <p>
+ * From Java 16 on {@code java.lang.reflect} is closed, so
+ * {@code setAccessible0(boolean)} can't be made accessible any more; the flag is
+ * written with {@link Unsafe} instead. The {@code override} field is hidden from
+ * reflection, so its offset is taken from {@link Mirror}, which declares the same
+ * instance fields and is laid out the same way, and then checked against a real
+ * {@link Field} before it is trusted. No warning is printed.
+ */
+@NoArgsConstructor(access = PRIVATE)
+final class AccessOverride {
+
+	/** The instance fields of {@link AccessibleObject}, in order. */
+	@SuppressWarnings("unused")
+	private static final class Mirror {
+		boolean override;
+		volatile Object accessCheckCache;
+	}
+
+	/**
+	 * Not {@link UnsafeAccess#unsafe}, which is read through {@link SneakyWrappers}
+	 * and so would initialize {@link _Permission}, and through it this class, again.
+	 */
+	private static final Unsafe unsafe;
+
+	/** The offset of {@code AccessibleObject.override}, or -1 if it couldn't be confirmed. */
+	private static final long offset;
+
+	static {
+		Unsafe theUnsafe = null;
+		long found = -1;
+		try {
+			final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			theUnsafe = (Unsafe) field.get(null);
+
+			final long candidate = theUnsafe.objectFieldOffset(Mirror.class.getDeclaredField("override"));
+			final Field probe = Mirror.class.getDeclaredField("override"); // a fresh copy, not yet accessible
+			final boolean before = theUnsafe.getBoolean(probe, candidate);
+			probe.setAccessible(true);
+			if (!before && theUnsafe.getBoolean(probe, candidate)) found = candidate;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			// leave overriding unavailable
+		}
+		unsafe = theUnsafe;
+		offset = found;
+	}
+
+	/** Whether {@link #override(AccessibleObject)} works. */
+	static final boolean available = offset != -1;
+
+	/** @return whether the object was made accessible, which it is unless overriding isn't {@link #available} */
+	static boolean override(@NotNull final AccessibleObject object) {
+		if (offset == -1) return false;
+		unsafe.putBooleanVolatile(object, offset, true);
+		return true;
+	}
+
+}
@@ -29,6 +29,18 @@ package tech.napkin.reflectionhelper
 
 import org.jetbrains.annotations.Range
 import tech.napkin.reflectionhelper.Permission.tryOverridePermission
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.reflect.Field
+import java.util.ArrayDeque
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.Spliterator
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Consumer
+import java.util.function.Predicate
+import java.util.stream.Stream
+import java.util.stream.StreamSupport
 
 /**
  * A container class for the [memory] and [overhead] getters. This method uses a
@@ -39,7 +51,7 @@ import tech.napkin.reflectionhelper.Permission.tryOverridePermission
 @Suppress("unused")
 object Memory {
 
-	@JvmField val is64Bit: Boolean = System.getProperty("os.arch").contains("64")
+	@JvmField val is64Bit: Boolean = AddressSize.BYTES == 8
 
 
 	/**
@@ -115,6 +127,384 @@ object Memory {
 	@JvmStatic val Any?.overhead: @Range(from = 0, to = 256) Long get() = (if (this == null) 8 else 192).bittage
 
 
+	/**
+	 * A field of a [Layout], with its offset from the start of the object and its
+	 * size, in bits.
+	 */
+	class Slot internal constructor(@JvmField val field: Field, @JvmField val offset: Long, @JvmField val size: Long)
+
+	/**
+	 * The layout of the instances of a class as the running JVM lays them out, in
+	 * bits like everything else here: the object header, every instance field
+	 * (including those of superclasses) ordered by offset, and the total size once
+	 * aligned. For array classes, this is the layout of an empty array.
+	 *
+	 * Offsets come from the JVM itself where it will tell them; classes it won't
+	 * (records and hidden classes) are laid out largest field first after the
+	 * header, which is what HotSpot does anyway.
+	 */
+	class Layout internal constructor(@JvmField val type: Class<*>, @JvmField val header: Long, @JvmField val slots: List<Slot>, @JvmField val size: Long, internal val exact: Boolean) {
+
+		/** The bits lost to alignment, between fields and at the end. */
+		val padding: Long get() = size - header - slots.sumOf { it.size }
+
+		/** The slots holding references, for walking the object graph. */
+		internal val references: List<Slot> = slots.filterNot { it.field.type.isPrimitive }
+
+	}
+
+	/** The size of a reference, in bytes - 4 with compressed oops, otherwise 8. */
+	@JvmField val referenceSize: Int = UnsafeAccess.unsafe.arrayIndexScale(Array<Any>::class.java)
+
+	/** Objects are aligned to 8 bytes unless `-XX:ObjectAlignmentInBytes` says otherwise. */
+	private const val alignment = 8L
+
+	/** Fields start straight after the header, and a lone byte field fits straight after it. */
+	private class HeaderProbe(@JvmField val b: Byte)
+
+	private val headerSize: Long = UnsafeAccess.unsafe.objectFieldOffset(HeaderProbe::class.java.getDeclaredField("b"))
+
+	private val layouts = object : ClassValue<Layout>() {
+		override fun computeValue(type: Class<*>): Layout = computeLayout(type)
+	}
+
+
+	/**
+	 * The cached layout of the instances of a class.
+	 *
+	 * @see Layout
+	 */
+	@JvmStatic fun layout(type: Class<*>): Layout = layouts.get(type)
+
+	/** The size in bytes of a field or array element of the given type. */
+	@JvmStatic fun sizeOf(type: Class<*>): Int = when (type) {
+		Primitives.boolean, Primitives.byte -> 1
+		Primitives.char, Primitives.short -> 2
+		Primitives.int, Primitives.float -> 4
+		Primitives.long, Primitives.double -> 8
+		else -> referenceSize
+	}
+
+	private fun computeLayout(type: Class<*>): Layout {
+		if (type.isArray) {
+			val header = UnsafeAccess.unsafe.arrayBaseOffset(type).toLong()
+			return Layout(type, header * 8, emptyList(), align(header) * 8, true)
+		}
+
+		val fields = generateSequence(type) { it.superclass }
+			.flatMap { it.declaredFields.asSequence() }
+			.filter(Modifiers.Not::Static)
+			.toList()
+
+		var exact = true
+		val slots = try {
+			fields.map { Slot(it, UnsafeAccess.unsafe.objectFieldOffset(it) * 8, sizeOf(it.type) * 8L) }
+		} catch (e: UnsupportedOperationException) {
+			exact = false
+			var offset = headerSize
+			fields.sortedByDescending { sizeOf(it.type) }.map {
+				val size = sizeOf(it.type).toLong()
+				offset = (offset + size - 1) / size * size
+				Slot(it, offset * 8, size * 8).also { offset += size }
+			}
+		}.sortedBy { it.offset }
+
+		val end = slots.maxOfOrNull { it.offset / 8 + it.size / 8 } ?: headerSize
+		return Layout(type, headerSize * 8, slots, align(end) * 8, exact)
+	}
+
+	private fun align(bytes: Long): Long = (bytes + alignment - 1) / alignment * alignment
+
+
+	/**
+	 * The size of an object itself, in bits, as the running JVM lays it out - not
+	 * counting anything it references. Arrays count their elements.
+	 */
+	@JvmStatic fun shallowSize(obj: Any): Long {
+		val type = obj.javaClass
+		if (!type.isArray) return layout(type).size
+		val length = java.lang.reflect.Array.getLength(obj).toLong()
+		return align(layout(type).header / 8 + length * sizeOf(type.componentType)) * 8
+	}
+
+	/**
+	 * The size of an object and of everything reachable from it, in bits, with every
+	 * object counted once no matter how often it is referenced.
+	 *
+	 * Unlike [memory], the graph is walked iteratively, so it can be arbitrarily deep,
+	 * and sizes come from [layout]. Classes and class loaders are neither counted nor
+	 * walked into, as they belong to everything.
+	 */
+	@JvmStatic fun deepSize(obj: Any?): Long = walk(listOf(obj), identitySet())
+
+	/**
+	 * The size of the static fields of a class, and of everything reachable from
+	 * them, in bits. See [deepSize].
+	 *
+	 * The class is not initialized if it hasn't been yet.
+	 */
+	@JvmStatic fun staticMemory(type: Class<*>): Long = staticMemory(type, identitySet())
+
+	/**
+	 * The [staticMemory] of every class defined by a class loader, with objects
+	 * reachable from several of them counted once. This is what a class loader keeps
+	 * alive, such as after a plugin is unloaded or an application redeployed.
+	 *
+	 * @throws UnsupportedOperationException if the class loader's classes can't be read on this JVM
+	 */
+	@JvmStatic fun staticMemory(loader: ClassLoader): Long {
+		val visited = identitySet()
+		return classesOf(loader).sumOf { staticMemory(it, visited) }
+	}
+
+	/**
+	 * The [staticMemory] of each class defined by a class loader, each counted on its
+	 * own, to find which of them hold on to the most.
+	 *
+	 * @return the sizes by class, largest first
+	 * @throws UnsupportedOperationException if the class loader's classes can't be read on this JVM
+	 */
+	@JvmStatic fun staticMemoryByClass(loader: ClassLoader): Map<Class<*>, Long> =
+		classesOf(loader).map { it to staticMemory(it) }.sortedByDescending { it.second }.toMap(LinkedHashMap())
+
+
+	private fun identitySet(): MutableSet<Any> = Collections.newSetFromMap(IdentityHashMap())
+
+	private fun staticMemory(type: Class<*>, visited: MutableSet<Any>): Long {
+		var size = 0L
+		val roots = ArrayList<Any?>()
+		for (field in type.declaredFields) {
+			if (!Modifiers.Is.Static(field)) continue
+			size += sizeOf(field.type) * 8L
+			if (!field.type.isPrimitive) roots += readStatic(field)
+		}
+		return size + walk(roots, visited)
+	}
+
+	private fun readStatic(field: Field): Any? = try {
+		UnsafeAccess.unsafe.getObject(UnsafeAccess.unsafe.staticFieldBase(field), UnsafeAccess.unsafe.staticFieldOffset(field))
+	} catch (e: UnsupportedOperationException) { // records and hidden classes
+		readReflectively(field, null)
+	}
+
+	private fun readReflectively(field: Field, obj: Any?): Any? = try {
+		_Permission.ensureAccessible(field).get(obj)
+	} catch (e: Exception) { // not opened to us, so it can't be walked
+		null
+	}
+
+	/** Sum the [shallowSize] of every object reachable from the roots that hasn't been visited yet. */
+	private fun walk(roots: Iterable<Any?>, visited: MutableSet<Any>): Long {
+		val stack = ArrayDeque<Any>()
+		for (root in roots) {
+			if (root != null && !isShared(root) && visited.add(root)) stack.push(root)
+		}
+
+		var total = 0L
+		while (stack.isNotEmpty()) {
+			val obj = stack.pop()
+			total += shallowSize(obj)
+			forEachReference(obj) {
+				if (it != null && !isShared(it) && visited.add(it)) stack.push(it)
+			}
+		}
+		return total
+	}
+
+	private fun isShared(obj: Any): Boolean = obj is Class<*> || obj is ClassLoader
+
+	/** Every reference held by an object, read by offset where the JVM gave one. */
+	private inline fun forEachReference(obj: Any, action: (Any?) -> Unit) {
+		if (obj is Array<*>) {
+			obj.forEach(action)
+			return
+		}
+		val layout = layout(obj.javaClass)
+		for (slot in layout.references) {
+			action(layout.read(slot, obj))
+		}
+	}
+
+	private fun Layout.read(slot: Slot, obj: Any): Any? =
+		if (exact) UnsafeAccess.unsafe.getObject(obj, slot.offset / 8) else readReflectively(slot.field, obj)
+
+
+	/**
+	 * An object reached by a [Traversal]: the object, the node it was reached from,
+	 * and the field or array index it was reached through.
+	 */
+	class Node internal constructor(@JvmField val obj: Any, @JvmField val parent: Node?, @JvmField val field: Field?, @JvmField val index: Int, @JvmField val depth: Int) {
+
+		/** How the object was reached from the root, like `next.values[3].name`; empty for the root. */
+		val path: String get() {
+			val nodes = generateSequence(this) { it.parent }.toList().asReversed()
+			val path = StringBuilder()
+			for (node in nodes) {
+				if (node.field != null) {
+					if (path.isNotEmpty()) path.append('.')
+					path.append(node.field.name)
+				} else if (node.parent != null) {
+					path.append('[').append(node.index).append(']')
+				}
+			}
+			return path.toString()
+		}
+
+		override fun toString(): String = "${path.ifEmpty { "<root>" }} (${obj.javaClass.name})"
+
+	}
+
+	/**
+	 * A walk over the object graph reachable from a root, as a lazy [Stream] of
+	 * [Node]s, for building analyses on top of. An object is only read when its node
+	 * is pulled from the stream, and every object is reached once, through the
+	 * first path found to it; the order is depth first, but not guaranteed.
+	 *
+	 * Parallel streams split the walk between threads, sharing a concurrent set of
+	 * the objects already reached. As with [deepSize], classes and class loaders are
+	 * never reached.
+	 *
+	 * Traversals are configured before streaming; changing one afterwards does not
+	 * affect the streams already created.
+	 */
+	class Traversal internal constructor() {
+
+		private var maxDepth = Int.MAX_VALUE
+		private var classes: Predicate<Class<*>> = Predicate { true }
+		private var fields: Predicate<Field> = Predicate { true }
+
+		/** Reach objects at most this many references away from the root. */
+		fun maxDepth(depth: Int): Traversal = apply {
+			require(depth >= 0) { "Negative depth: $depth" }
+			maxDepth = depth
+		}
+
+		/** Neither reach nor walk through objects whose class matches. */
+		fun skipClasses(predicate: Predicate<Class<*>>): Traversal = apply { classes = classes.and(predicate.negate()) }
+
+		/**
+		 * Only follow the fields that match, such as `Modifiers.Not::Transient`.
+		 * Array elements are always followed.
+		 */
+		fun followFields(predicate: Predicate<Field>): Traversal = apply { fields = fields.and(predicate) }
+
+		/**
+		 * @param root the object to start from; a null root makes an empty stream
+		 * @param parallel whether the stream is parallel
+		 */
+		@JvmOverloads
+		fun stream(root: Any?, parallel: Boolean = false): Stream<Node> {
+			val visited: (Any) -> Boolean = if (parallel) {
+				val set = ConcurrentHashMap.newKeySet<Identity>();
+				{ set.add(Identity(it)) }
+			} else {
+				val set = identitySet();
+				{ set.add(it) }
+			}
+			val walker = Walker(maxDepth, classes, fields, visited, ArrayDeque())
+			walker.push(root, null, null, -1, 0)
+			return StreamSupport.stream(walker, parallel)
+		}
+
+	}
+
+	/** Start configuring a walk over an object graph. */
+	@JvmStatic fun traversal(): Traversal = Traversal()
+
+	/** All objects reachable from the root, see [Traversal]. */
+	@JvmStatic fun reachable(root: Any?): Stream<Node> = Traversal().stream(root)
+
+
+	/** Identity semantics for a concurrent set. */
+	private class Identity(private val obj: Any) {
+		override fun equals(other: Any?): Boolean = other is Identity && other.obj === obj
+		override fun hashCode(): Int = System.identityHashCode(obj)
+	}
+
+	private class Walker(
+		private val maxDepth: Int,
+		private val classes: Predicate<Class<*>>,
+		private val fields: Predicate<Field>,
+		private val visited: (Any) -> Boolean,
+		private val stack: ArrayDeque<Node>
+	) : Spliterator<Node> {
+
+		/** Nodes already walked through by [trySplit], still to be returned. */
+		private val expanded = ArrayDeque<Node>()
+
+		fun push(obj: Any?, parent: Node?, field: Field?, index: Int, depth: Int) {
+			if (obj != null && !isShared(obj) && classes.test(obj.javaClass) && visited(obj)) {
+				stack.addLast(Node(obj, parent, field, index, depth))
+			}
+		}
+
+		/** Push the objects a node references, in reverse so that they are taken in order. */
+		private fun expand(node: Node) {
+			if (node.depth >= maxDepth) return
+			val obj = node.obj
+			if (obj is Array<*>) {
+				for (i in obj.indices.reversed()) push(obj[i], node, null, i, node.depth + 1)
+				return
+			}
+			val layout = layout(obj.javaClass)
+			for (slot in layout.references.asReversed()) {
+				if (fields.test(slot.field)) push(layout.read(slot, obj), node, slot.field, -1, node.depth + 1)
+			}
+		}
+
+		override fun tryAdvance(action: Consumer<in Node>): Boolean {
+			val node = expanded.pollFirst() ?: stack.pollLast()?.also(::expand) ?: return false
+			action.accept(node)
+			return true
+		}
+
+		/**
+		 * Hand half of the pending nodes, the ones closest to the root, to another
+		 * walker. A walk starts with only its root pending, so nodes are walked through
+		 * ahead of time until there is something to split.
+		 */
+		override fun trySplit(): Spliterator<Node>? {
+			var ahead = 0
+			while (stack.size < 2 && stack.isNotEmpty() && ahead++ < SPLIT_AHEAD) {
+				expanded.addLast(stack.pollLast().also(::expand))
+			}
+			if (stack.size < 2) return null
+
+			val half = ArrayDeque<Node>()
+			repeat(stack.size / 2) { half.addLast(stack.pollFirst()) }
+			return Walker(maxDepth, classes, fields, visited, half)
+		}
+
+		override fun estimateSize(): Long = Long.MAX_VALUE
+
+		override fun characteristics(): Int = Spliterator.NONNULL or Spliterator.DISTINCT
+
+	}
+
+	/** How many nodes [Walker.trySplit] may walk through to find something to split. */
+	private const val SPLIT_AHEAD = 64
+
+	/**
+	 * `ClassLoader.classes` is filtered from reflection since Java 12, so it is read
+	 * through the JDK's own trusted lookup, whose static field isn't.
+	 */
+	private val loaderClasses: MethodHandle? by lazy {
+		try {
+			val field = MethodHandles.Lookup::class.java.getDeclaredField("IMPL_LOOKUP")
+			val trusted = UnsafeAccess.unsafe.getObject(UnsafeAccess.unsafe.staticFieldBase(field), UnsafeAccess.unsafe.staticFieldOffset(field)) as MethodHandles.Lookup
+			trusted.findGetter(ClassLoader::class.java, "classes", ArrayList::class.java)
+		} catch (e: ReflectiveOperationException) {
+			null
+		}
+	}
+
+	private fun classesOf(loader: ClassLoader): List<Class<*>> {
+		val getter = loaderClasses ?: throw UnsupportedOperationException("Cannot read the classes of a class loader on this JVM")
+		val classes = getter.invoke(loader) as ArrayList<*>
+		return synchronized(classes) { classes.map { it as Class<*> } }
+	}
+
+
 	/*
 	 * Store memory and overhead down here, as literals, so that if you call memory on
 	 * one of these, it's routed straight to here, instead of having to go through
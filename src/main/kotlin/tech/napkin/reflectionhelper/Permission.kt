@@ -28,10 +28,7 @@
 package tech.napkin.reflectionhelper
 
 import org.jetbrains.annotations.Range
-import tech.napkin.reflectionhelper.Primitives.boolean
 import java.lang.reflect.AccessibleObject
-import java.lang.reflect.InaccessibleObjectException
-import java.lang.reflect.Method
 
 import kotlin.reflect.KClass
 
@@ -65,7 +62,7 @@ object Permission {
 		UNCHANGED (0),
 		/** Use [AccessibleObject.setAccessible] to set the accessibility. */
 		SET       (1),
-		/** Reflectively call [AccessibleObject.setAccessible0] to override checks. */
+		/** Override the checks of [AccessibleObject.setAccessible], see [overridePermission]. */
 		OVERRIDE  (2);
 
 	}
@@ -77,32 +74,17 @@ object Permission {
 	 * does anyways, since executing that calls clinit which would, if not `lazy`, set
 	 * this variable's value.
 	 */
-	private val setAccessible0: Method by lazy {
-		AccessibleObject::class.java.getDeclaredMethod("setAccessible0", boolean::class.java)
-	}
-
 	@Suppress("MemberVisibilityCanBePrivate")
 	val canOverride: Boolean by lazy {
-		return@lazy try {
-			setAccessible0.isAccessible = true
-			true
-		} catch (e: Throwable) {
-			when(e) {
-				is SecurityException, is InaccessibleObjectException -> {
-					System.err.println("Cannot use setAccessible0 - permission overriding will not work.")
-					false
-				}
-				else -> throw e
-			}
+		AccessOverride.available.also {
+			if (!it) System.err.println("Cannot override access checks - permission overriding will not work.")
 		}
 	}
 
 
 	@JvmStatic
 	fun <T : AccessibleObject> T.overridePermission(): T = apply {
-		if (canOverride) {
-			setAccessible0.invoke(this, true)
-		} else {
+		if (!canOverride || !AccessOverride.override(this)) {
 			throw IllegalAccessException("Do not have permission to override.")
 		}
 	}
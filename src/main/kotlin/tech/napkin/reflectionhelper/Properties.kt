@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper
+
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.jvm.internal.CallableReference
+import kotlin.jvm.internal.ClassBasedDeclarationContainer
+import kotlin.reflect.KMutableProperty1
+import kotlin.reflect.KProperty1
+import kotlin.reflect.jvm.javaField
+import kotlin.reflect.jvm.javaGetter
+import kotlin.reflect.jvm.javaSetter
+
+/**
+ * Reading and writing Kotlin properties through [MethodHandle]s instead of
+ * kotlin-reflect, which builds (and caches per reference) a full model of the
+ * class from its metadata before a property can be read, and then still calls it
+ * reflectively.
+ *
+ * A property reference such as `Foo::bar` already knows the class it belongs to,
+ * its name and the JVM signature of its getter, so that is used to find the getter
+ * and setter - or the field, for properties without accessors - with plain Java
+ * reflection. This is done once per property; afterwards a read or write is a
+ * lookup by the reference's owner class and getter signature, and a handle
+ * invocation. Only references kotlin-reflect has to be used for, like those
+ * created by kotlin-reflect itself, go through it, and only once.
+ *
+ * @author SirNapkin1334
+ */
+@Suppress("unused")
+object Properties {
+
+	/** [getter] is typed `(Object)Object`, [setter] `(Object, Object)void`. */
+	private class Accessor(@JvmField val getter: MethodHandle, @JvmField val setter: MethodHandle?)
+
+	private val lookup = MethodHandles.lookup()
+
+	/**
+	 * Plain references, by owner class and then getter signature. They aren't keys
+	 * themselves: their `equals` and `hashCode` go through [CallableReference.getOwner],
+	 * which makes a `KClass` on every call, and the compiler creates a new reference
+	 * each time one is evaluated, so identity doesn't work either.
+	 */
+	private val references = object : ClassValue<ConcurrentHashMap<String, Accessor>>() {
+		override fun computeValue(type: Class<*>) = ConcurrentHashMap<String, Accessor>()
+	}
+
+	/** Everything else, which kotlin-reflect has to be used for anyway. */
+	private val others = ConcurrentHashMap<KProperty1<*, *>, Accessor>()
+
+	/**
+	 * [CallableReference]'s `owner` field, the class the reference was compiled
+	 * against, typed `(CallableReference)Class`. Null if it can't be read, and for
+	 * references compiled before Kotlin 1.4 the field itself is null.
+	 */
+	private val ownerField: MethodHandle? = try {
+		lookup.unreflectGetter(_Permission.ensureAccessible(CallableReference::class.java.getDeclaredField("owner")))
+			.asType(MethodType.methodType(Class::class.java, CallableReference::class.java))
+	} catch (e: ReflectiveOperationException) {
+		null
+	} catch (e: RuntimeException) { // not opened to us
+		null
+	}
+
+
+	/** Read the property, like [KProperty1.get] but without kotlin-reflect. */
+	@JvmStatic
+	@Suppress("UNCHECKED_CAST")
+	fun <T, V> KProperty1<T, V>.fastGet(receiver: T): V = accessor(this).getter.invokeExact(receiver as Any?) as V
+
+	/**
+	 * Write the property, like [KMutableProperty1.set] but without kotlin-reflect.
+	 *
+	 * @throws IllegalAccessException if the property has neither a setter nor a field to write
+	 */
+	@JvmStatic
+	fun <T, V> KMutableProperty1<T, V>.fastSet(receiver: T, value: V) {
+		val setter = accessor(this).setter ?: throw IllegalAccessException("Cannot set property $name")
+		setter.invokeExact(receiver as Any?, value as Any?)
+	}
+
+	/** The cached getter of a property, typed `(Object)Object`. */
+	@JvmStatic
+	fun getter(property: KProperty1<*, *>): MethodHandle = accessor(property).getter
+
+	/** The cached setter of a property, typed `(Object, Object)void`, or null if it can't be written. */
+	@JvmStatic
+	fun setter(property: KProperty1<*, *>): MethodHandle? = accessor(property).setter
+
+
+	private fun accessor(property: KProperty1<*, *>): Accessor {
+		val owner = (property as? CallableReference)?.jClass() ?: return others[property] ?: others.getOrPut(property) { create(property) }
+		val accessors = references.get(owner)
+		val signature = (property as CallableReference).signature
+		return accessors[signature] ?: accessors.getOrPut(signature) { create(property) }
+	}
+
+	private fun create(property: KProperty1<*, *>): Accessor {
+		val getter = (property as? CallableReference)?.let(::resolveGetter) ?: reflectGetter(property)
+		val setter = (property as? KMutableProperty1<*, *>)?.let { (it as? CallableReference)?.let(::resolveSetter) ?: reflectSetter(it) }
+		return Accessor(
+			getter.asType(MethodType.methodType(Any::class.java, Any::class.java)),
+			setter?.asType(MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java))
+		)
+	}
+
+
+	/* from the reference, the owner is the class for members, and the file facade for extensions */
+
+	private fun CallableReference.ownerClass(): Class<*>? = jClass() ?: (owner as? ClassBasedDeclarationContainer)?.jClass
+
+	private fun CallableReference.jClass(): Class<*>? = ownerField?.invokeExact(this) as Class<*>?
+
+	/** The getter's type, `()V` for members and `(R)V` for extensions. */
+	private fun CallableReference.getterType(owner: Class<*>): MethodType? = try {
+		MethodType.fromMethodDescriptorString(signature.substring(signature.indexOf('(')), owner.classLoader)
+	} catch (e: RuntimeException) { // unresolvable types, or not a signature at all
+		null
+	}
+
+	private fun resolveGetter(reference: CallableReference): MethodHandle? {
+		val owner = reference.ownerClass() ?: return null
+		val type = reference.getterType(owner) ?: return null
+		val getterName = reference.signature.substringBefore('(')
+
+		return when (type.parameterCount()) {
+			0 -> method(owner, getterName, type, false)?.let(lookup::unreflect)
+				?: field(owner, reference.name, type.returnType())?.let(lookup::unreflectGetter)
+			1 -> method(owner, getterName, type, true)?.let(lookup::unreflect)
+			else -> null
+		}
+	}
+
+	private fun resolveSetter(reference: CallableReference): MethodHandle? {
+		val owner = reference.ownerClass() ?: return null
+		val type = reference.getterType(owner) ?: return null
+		val name = reference.name
+		val setterName = "set" + if (name.length > 2 && name.startsWith("is") && Character.isUpperCase(name[2])) {
+			name.substring(2)
+		} else {
+			Character.toUpperCase(name[0]) + name.substring(1)
+		}
+
+		return when (type.parameterCount()) {
+			0 -> method(owner, setterName, MethodType.methodType(Void.TYPE, type.returnType()), false)?.let(lookup::unreflect)
+				?: field(owner, name, type.returnType())?.takeUnless { Modifier.isFinal(it.modifiers) }?.let(lookup::unreflectSetter)
+			1 -> method(owner, setterName, MethodType.methodType(Void.TYPE, type.parameterType(0), type.returnType()), true)?.let(lookup::unreflect)
+			else -> null
+		}
+	}
+
+	/** A method of the class or its superclasses, found without throwing on a miss. */
+	private fun method(owner: Class<*>, name: String, type: MethodType, static: Boolean): Method? =
+		generateSequence(owner) { it.superclass }.mapNotNull {
+			SneakyWrappers.Reflect.ByClass.findDeclaredMethod(it, name, *type.parameterArray())
+		}.firstOrNull {
+			it.returnType == type.returnType() && Modifier.isStatic(it.modifiers) == static
+		}?.let { _Permission.ensureAccessible(it) }
+
+	/** An instance field of the class or its superclasses, found without throwing on a miss. */
+	private fun field(owner: Class<*>, name: String, type: Class<*>): Field? =
+		generateSequence(owner) { it.superclass }.mapNotNull {
+			SneakyWrappers.Reflect.ByClass.findDeclaredField(it, name)
+		}.firstOrNull {
+			it.type == type && !Modifier.isStatic(it.modifiers)
+		}?.let { _Permission.ensureAccessible(it) }
+
+
+	/* the slow path, for properties that aren't plain references */
+
+	private fun reflectGetter(property: KProperty1<*, *>): MethodHandle =
+		property.javaGetter?.let { lookup.unreflect(_Permission.ensureAccessible(it)) }
+			?: property.javaField?.let { lookup.unreflectGetter(_Permission.ensureAccessible(it)) }
+			?: throw NoSuchFieldException("Property $property has neither a getter nor a backing field")
+
+	private fun reflectSetter(property: KMutableProperty1<*, *>): MethodHandle? =
+		property.javaSetter?.let { lookup.unreflect(_Permission.ensureAccessible(it)) }
+			?: property.javaField?.takeUnless { Modifier.isFinal(it.modifiers) }?.let { lookup.unreflectSetter(_Permission.ensureAccessible(it)) }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020  SirNapkin1334
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Visible
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Visible License for more details.
+ *
+ * You should have received a copy of the GNU General Visible License
+ * along with this library.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * The author can be contacted via:
+ *     Email: sirnapkin@protonmail.com
+ *     Twitter: @SirNapkin1334
+ *     Discord: @SirNapkin1334#7960
+ *     Reddit: u/SirNapkin1334
+ *     IRC: SirNapkin1334; Registered on Freenode, EFNet, possibly others
+ *
+ * If you wish to use this software in a way violating the terms, please
+ * contact the author, as an exception can be made.
+ */
+package tech.napkin.reflectionhelper;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** The classes {@link Proxies} generates have to verify, and pass every argument from the right slot. */
+public class ProxiesTest {
+
+	interface Primitives {
+		int add(int a, int b);
+		long shift(long value, byte by);
+		double scale(double value, float by);
+		boolean not(boolean value);
+		char next(char value);
+		void run();
+	}
+
+	/** Every parameter of {@code last} takes two slots, so the last one is loaded from slot 253. */
+	interface Wide {
+		long mixed(long a, double b, int c, long d);
+		long last(long a0, long a1, long a2, long a3, long a4, long a5, long a6, long a7, long a8,
+			long a9, long a10, long a11, long a12, long a13, long a14, long a15, long a16, long a17,
+			long a18, long a19, long a20, long a21, long a22, long a23, long a24, long a25, long a26,
+			long a27, long a28, long a29, long a30, long a31, long a32, long a33, long a34, long a35,
+			long a36, long a37, long a38, long a39, long a40, long a41, long a42, long a43, long a44,
+			long a45, long a46, long a47, long a48, long a49, long a50, long a51, long a52, long a53,
+			long a54, long a55, long a56, long a57, long a58, long a59, long a60, long a61, long a62,
+			long a63, long a64, long a65, long a66, long a67, long a68, long a69, long a70, long a71,
+			long a72, long a73, long a74, long a75, long a76, long a77, long a78, long a79, long a80,
+			long a81, long a82, long a83, long a84, long a85, long a86, long a87, long a88, long a89,
+			long a90, long a91, long a92, long a93, long a94, long a95, long a96, long a97, long a98,
+			long a99, long a100, long a101, long a102, long a103, long a104, long a105, long a106,
+			long a107, long a108, long a109, long a110, long a111, long a112, long a113, long a114,
+			long a115, long a116, long a117, long a118, long a119, long a120, long a121, long a122,
+			long a123, long a124, long a125, long a126);
+	}
+
+	interface Base {
+		Object value();
+	}
+
+	interface Covariant extends Base {
+		@Override
+		String value();
+	}
+
+
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+	private static int runs;
+
+	static int add(final int a, final int b) { return a + b; }
+	static long shift(final long value, final byte by) { return value << by; }
+	static double scale(final double value, final float by) { return value * by; }
+	static boolean not(final boolean value) { return !value; }
+	static char next(final char value) { return (char) (value + 1); }
+	static void run() { runs++; }
+	static long mixed(final long a, final double b, final int c, final long d) { return a + (long) b + c + d; }
+
+	/** The static method of this class with the name and type of a method. */
+	private static MethodHandle handler(final Method method) {
+		try {
+			return lookup.findStatic(ProxiesTest.class, method.getName(), MethodType.methodType(method.getReturnType(), method.getParameterTypes()));
+		} catch (final ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+
+	@Test
+	public void primitives() {
+		final Primitives proxy = Proxies.create(Primitives.class, ProxiesTest::handler);
+
+		assertEquals(5, proxy.add(2, 3));
+		assertEquals(1L << 40, proxy.shift(1, (byte) 40));
+		assertEquals(3.0, proxy.scale(2.0, 1.5f), 0);
+		assertTrue(proxy.not(false));
+		assertEquals('b', proxy.next('a'));
+		final int before = runs;
+		proxy.run();
+		assertEquals(before + 1, runs);
+	}
+
+	@Test
+	public void wide() throws ReflectiveOperationException {
+		final Method last = Wide.class.getMethod("last", Collections.nCopies(127, long.class).toArray(new Class<?>[0]));
+		final MethodHandle lastArgument = MethodHandles.dropArguments(MethodHandles.identity(long.class), 0, Collections.nCopies(126, long.class));
+		final Wide proxy = Proxies.create(Wide.class, method -> method.equals(last) ? lastArgument : handler(method));
+
+		assertEquals(10L, proxy.mixed(1, 2.0, 3, 4));
+		final Object[] args = new Object[127];
+		for (int i = 0; i < args.length; i++) args[i] = (long) i;
+		assertEquals(126L, last.invoke(proxy, args));
+	}
+
+	@Test
+	public void covariant() {
+		// the Object-returning method is a bridge to the String one, which is the only one needing a handler
+		assertEquals(1, Proxies.factory(Covariant.class).methods().size());
+
+		final Covariant proxy = Proxies.create(Covariant.class, method -> MethodHandles.constant(method.getReturnType(), "value"));
+		assertEquals("value", proxy.value());
+		assertEquals("value", ((Base) proxy).value());
+	}
+
+}